@@ -1,5 +1,6 @@
 package comics.app;
 
+import comics.player.ScriptLexer;
 import comics.player.ScriptLine;
 
 import java.util.*;
@@ -32,18 +33,16 @@ public class HelpUtils {
     public static int getFragTypeAtCharIndex(ScriptLine aLine, int anIndex)
     {
         // If index is in star name range, return star
-        String text = aLine.getText().toLowerCase();
-        String starName = aLine.getStarName();
-        if (starName == null) return FRAG_STAR;
-        int starEndInd = text.indexOf(starName) + starName.length() + 1;
-        if (anIndex < starEndInd)
+        ScriptLexer lexer = aLine.getLexer();
+        if (lexer.getTokenCount() <= ScriptLexer.STAR) return FRAG_STAR;
+        int starEnd = lexer.getTokenEnd(ScriptLexer.STAR);
+        if (anIndex <= starEnd)
             return FRAG_STAR;
 
         // If index is in action name range, return star
-        String actName = aLine.getActionName();
-        if (actName == null) return FRAG_ACTION;
-        int actEndInd = text.indexOf(actName, starEndInd) + actName.length() + 1;
-        if (anIndex < actEndInd)
+        if (lexer.getTokenCount() <= ScriptLexer.ACTION) return FRAG_ACTION;
+        int actEnd = lexer.getTokenEnd(ScriptLexer.ACTION);
+        if (anIndex <= actEnd)
             return FRAG_ACTION;
 
         // Return predicate
@@ -56,21 +55,20 @@ public class HelpUtils {
     public static Range getFragRangeAtCharIndex(ScriptLine aLine, int anIndex)
     {
         // If index is in star name range, return star
-        String text = aLine.getText().toLowerCase();
-        String starName = aLine.getStarName();
-        if (starName == null) return new Range(0, 0);
-        int starInd = text.indexOf(starName), starEnd = starInd + starName.length();
+        ScriptLexer lexer = aLine.getLexer();
+        if (lexer.getTokenCount() <= ScriptLexer.STAR) return new Range(0, 0);
+        int starInd = lexer.getTokenStart(ScriptLexer.STAR), starEnd = lexer.getTokenEnd(ScriptLexer.STAR);
         if (anIndex < starEnd + 1)
             return new Range(starInd, starEnd);
 
         // If index is in action name range, return star
-        String actName = aLine.getActionName();
-        if (actName == null) return new Range(starEnd + 1, starEnd + 1);
-        int actInd = text.indexOf(actName, starEnd + 1), actEnd = actInd + actName.length();
+        if (lexer.getTokenCount() <= ScriptLexer.ACTION) return new Range(starEnd + 1, starEnd + 1);
+        int actInd = lexer.getTokenStart(ScriptLexer.ACTION), actEnd = lexer.getTokenEnd(ScriptLexer.ACTION);
         if (anIndex < actEnd + 1)
             return new Range(actInd, actEnd);
 
         // Get predicate start by to next valid char and return range to end of text
+        String text = aLine.getText();
         int predInd = actEnd;
         while (predInd < text.length()) {
             char c = text.charAt(predInd);
@@ -3,6 +3,7 @@ package comics.app;
 import comics.player.*;
 
 import java.util.*;
+import puppets.PuppetImager;
 
 import snap.geom.RoundRect;
 import snap.gfx.*;
@@ -85,14 +86,21 @@ public class StarPicker extends ViewController {
      */
     protected void initUI()
     {
-        // Configure StarsView
-        setStarsForPlayer(_lineEditor.getPlayer());
+        // Configure StarsView (and restore star image priority when player starts playing)
+        PlayerView player = _lineEditor.getPlayer();
+        setStarsForPlayer(player);
+        player.addPropChangeListener(pc -> playerPlayingChanged(player), PlayerView.Playing_Prop);
 
         // Get StarsBrowser
         _starsBrowser = getView("StarsBrowser", BrowserView.class);
         _starsBrowser.setRowHeight(24);
         _starsBrowser.setResolver(new StarTreeResolver());
-        _starsBrowser.setItems(AssetIndex.get().getDirPaths("/"));
+        AssetIndex assetIndex = AssetIndex.get();
+        _starsBrowser.setItems(assetIndex.getDirPaths("/"));
+
+        // If asset index still loading, reset items when it arrives
+        if (!assetIndex.isLoaded())
+            assetIndex.addLoadListener(() -> ViewUtils.runLater(() -> _starsBrowser.setItems(assetIndex.getDirPaths("/"))));
     }
 
     /**
@@ -154,9 +162,28 @@ public class StarPicker extends ViewController {
     protected void setStarsForPlayer(PlayerView aPlayer)
     {
         List<Star> stars = getStarsForPlayer(aPlayer);
+
+        // If not playing, render star images for browsing at idle priority
+        if (!aPlayer.isPlaying()) {
+            for (Star star : stars)
+                if (star instanceof Actor actor && actor.getAsset() != null)
+                    actor.getAsset().setLoadPriority(PuppetImager.PRIORITY_IDLE);
+        }
+
         _starsView.setStars(stars);
     }
 
+    /**
+     * Called when player starts or stops playing to restore prefetch priority of star images demoted for browsing.
+     */
+    protected void playerPlayingChanged(PlayerView aPlayer)
+    {
+        if (!aPlayer.isPlaying()) return;
+        for (Star star : getStarsForPlayer(aPlayer))
+            if (star instanceof Actor actor && actor.getAsset() != null)
+                actor.getAsset().setLoadPriority(PuppetImager.PRIORITY_PREFETCH);
+    }
+
     /**
      * A view to hold list of stars in current script (Camera, Actors, Setting).
      */
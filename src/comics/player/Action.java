@@ -54,11 +54,22 @@ public class Action implements Loadable {
      */
     public String getNameUsed()
     {
-        String str = _line.getText().toLowerCase(), name = getName().toLowerCase();
-        int ind = str.indexOf(name), end = ind + name.length();
-        if (ind < 0) return name; // Shouldn't happen
-        while (end < str.length() && !Character.isWhitespace(str.charAt(end))) end++;
-        return str.substring(ind, end);
+        int ind = getNameUsedTokenIndex();
+        if (ind < 0) return getName().toLowerCase(); // Shouldn't happen
+        return _line.getLexer().getTokenString(ind);
+    }
+
+    /**
+     * Returns the index of the line token that invoked this action.
+     */
+    protected int getNameUsedTokenIndex()
+    {
+        ScriptLexer lexer = _line.getLexer();
+        String name = getName();
+        for (int i = ScriptLexer.ACTION; i < lexer.getTokenCount(); i++)
+            if (lexer.isTokenStartsWith(i, name))
+                return i;
+        return -1;
     }
 
     /**
@@ -74,10 +85,9 @@ public class Action implements Loadable {
      */
     public String getText()
     {
-        String str = _line.getText().toLowerCase(), name = getNameUsed().toLowerCase();
-        int ind = str.indexOf(name) + name.length();
-        str = str.substring(ind).trim();
-        return str;
+        int ind = getNameUsedTokenIndex();
+        int start = ind >= 0 ? _line.getLexer().getTokenEnd(ind) : 0;
+        return _line.getText().substring(start).trim().toLowerCase();
     }
 
     /**
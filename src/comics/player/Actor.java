@@ -26,6 +26,16 @@ public class Actor extends ImageView implements Star {
     // Whether actor is flipped along x
     boolean _flipX;
 
+    // The asset of current image (asset or anim asset)
+    Asset _imageAsset;
+
+    // The sprite strip for current image (if anim strip) and current strip frame
+    SpriteStrip _strip;
+    int _stripFrame;
+
+    // Whether current image is painted flipped along x (instead of using a flipped copy)
+    boolean _paintFlipX;
+
     /**
      * Create new actor.
      */
@@ -39,6 +49,7 @@ public class Actor extends ImageView implements Star {
 
         // Set Asset image
         Image img = anAsset.getImage();
+        _imageAsset = anAsset;
         setImage(img);
         setFillHeight(true);
         setFillWidth(true);
@@ -99,9 +110,8 @@ public class Actor extends ImageView implements Star {
      */
     public Action getAction(ScriptLine aScriptLine)
     {
-        // Get action name from script
-        String words[] = aScriptLine.getWords();
-        String cmd = words.length > 1 ? words[1] : null;
+        // Get action name from script (matched in place against action names)
+        String cmd = aScriptLine.getLexer().getTokenMatch(ScriptLexer.ACTION, _actions);
         if (cmd == null)
             return null;
 
@@ -204,7 +214,7 @@ public class Actor extends ImageView implements Star {
     public Asset.AnimImage getAnim(String anAnimName)
     {
         String starName = getStarName();
-        Asset.AnimImage aimg = Asset.getAnimAsset(starName, anAnimName);
+        Asset.AnimImage aimg = Asset.getAnimAsset(getStage().getAssetIndex(), starName, anAnimName);
         return aimg;
     }
 
@@ -215,14 +225,12 @@ public class Actor extends ImageView implements Star {
     {
         // Get image for name and cache old image
         String starName = getStarName();
-        AnimImage anim = Asset.getAnimAsset(starName, aName);
+        AnimImage anim = Asset.getAnimAsset(getStage().getAssetIndex(), starName, aName);
         if (anim == null || !anim.isLoaded()) return;
 
         // Get time and frame
-        Image img = anim.getImage();
-        ImageSet iset = img.getImageSet();
         int time = aTime;
-        if (time < 0) time = iset.getCount() * 25;
+        if (time < 0) time = anim.getFrameCount() * 25;
         int frame = aFrame;
         if (frame < 0) frame = time / 25;
 
@@ -256,17 +264,89 @@ public class Actor extends ImageView implements Star {
         double bx = getX() + (oldW / 2 + offOld) - (newW / 2 + offNew);
         double by = getY() - (newH - oldH);
 
-        // Set new image, bounds, offset and reset frame
-        Image img;
-        if (anAsset.getClass().getName().endsWith("Pup"))
-            img = isFlipX() ? anAsset.getImage() : anAsset.getImageFlipX();
-        else img = isFlipX() ? anAsset.getImageFlipX() : anAsset.getImage();
-        setImage(img);
+        // Set new image (and strip, if anim strip), paint flip (puppet images face other way), bounds, offset and frame
+        setImageForAsset(anAsset);
+        _paintFlipX = isFlipX() != anAsset.getClass().getName().endsWith("Pup");
         setBounds(bx, by, newW, newH);
         setFrame(0);
         _offsetX = offsetX;
     }
 
+    /**
+     * Returns the asset of current image.
+     */
+    public Asset getImageAsset()
+    {
+        return _imageAsset;
+    }
+
+    /**
+     * Sets the image (and strip, if anim strip) for given asset, without changing bounds.
+     */
+    protected void setImageForAsset(Asset anAsset)
+    {
+        AnimImage anim = anAsset instanceof AnimImage ? (AnimImage) anAsset : null;
+        _imageAsset = anAsset;
+        _strip = anim != null ? anim.getStrip() : null;
+        if (getParent() instanceof StageView stage)
+            stage.assetsInUseChanged();
+
+        // If anim strip not loaded yet, show nothing until loaded (so whole strip is never painted) and try again
+        Image img = anAsset.getImage();
+        if (anim != null && _strip == null && !img.isLoaded()) {
+            setImage(null);
+            img.addLoadListener(() -> ViewUtils.runLater(() -> {
+                if (_imageAsset == anAsset)
+                    setImageForAsset(anAsset);
+            }));
+            return;
+        }
+
+        // Set image
+        setImage(img);
+    }
+
+    /**
+     * Override to return strip frame if showing anim strip.
+     */
+    public int getFrame()
+    {
+        return _strip != null ? _stripFrame : super.getFrame();
+    }
+
+    /**
+     * Override to set strip frame if showing anim strip.
+     */
+    public void setFrame(int aValue)
+    {
+        if (_strip == null) { super.setFrame(aValue); return; }
+        if (aValue == _stripFrame) return;
+        _stripFrame = aValue;
+        repaint();
+    }
+
+    /**
+     * Override to paint flipped along x (if needed) and to paint strip frame if showing anim strip.
+     */
+    protected void paintFront(Painter aPntr)
+    {
+        // If flipped, mirror around center
+        if (_paintFlipX) {
+            aPntr.save();
+            aPntr.translate(getWidth(), 0);
+            aPntr.scale(-1, 1);
+        }
+
+        // Paint strip frame (instead of whole strip image) or normal image
+        if (_strip != null)
+            _strip.paintFrame(aPntr, _stripFrame, 0, 0, getWidth(), getHeight());
+        else super.paintFront(aPntr);
+
+        // Restore
+        if (_paintFlipX)
+            aPntr.restore();
+    }
+
     /**
      * Sets the x location.
      */
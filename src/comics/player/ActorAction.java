@@ -82,6 +82,9 @@ public class ActorAction extends Action {
      */
     public static class WalksAction extends ActorAction {
 
+        // Whether walk is in from right or out
+        boolean  _fromRight, _out;
+
         /**
          * Creates the action.
          */
@@ -105,6 +108,8 @@ public class ActorAction extends Action {
         {
             getAnim("Walk");
             setRunTime(2000);
+            _fromRight = getLine().hasWord("right");
+            _out = getLine().hasWord("out");
         }
 
         /**
@@ -119,8 +124,7 @@ public class ActorAction extends Action {
             StageView stage = line.getScript().getStage();
 
             // Find out if walk is from right
-            String[] words = getLine().getWords();
-            boolean fromRight = ArrayUtils.contains(words, "right");
+            boolean fromRight = _fromRight;
             if (fromRight)
                 actor.setFlipX(true);
 
@@ -135,7 +139,7 @@ public class ActorAction extends Action {
             }
 
             // Handle walk out
-            else if (ArrayUtils.contains(words, "out")) {
+            else if (_out) {
                 actor.setLocX(HPos.LEFT, stage.getWidth(), anim);
             }
 
@@ -153,6 +157,9 @@ public class ActorAction extends Action {
      */
     public static class DropsAction extends ActorAction {
 
+        // Whether drop is on right
+        boolean  _right;
+
         /**
          * Creates the action.
          */
@@ -170,6 +177,14 @@ public class ActorAction extends Action {
             return new String[]{"on right"};
         }
 
+        /**
+         * Override to parse predicate.
+         */
+        public void load()
+        {
+            _right = getLine().hasWord("right");
+        }
+
         /**
          * Runs the action.
          */
@@ -180,8 +195,7 @@ public class ActorAction extends Action {
             ViewAnim anim = actor.getAnim(2000);
 
             // Handle drop right
-            String[] words = getLine().getWords();
-            if (ArrayUtils.contains(words, "right")) {
+            if (_right) {
                 actor.setFlipX(true);
                 actor.setLocX(HPos.CENTER, 60, null);
                 actor.setLocY(VPos.TOP, -actor.getHeight(), null);
@@ -252,6 +266,9 @@ public class ActorAction extends Action {
      */
     public static class SaysAction extends ActorAction {
 
+        // The text to say
+        String  _text;
+
         /**
          * Creates the action.
          */
@@ -269,6 +286,18 @@ public class ActorAction extends Action {
             return new String[]{"Good day!", "Howdy!"};
         }
 
+        /**
+         * Override to parse text to say.
+         */
+        public void load()
+        {
+            ScriptLine line = getLine();
+            ScriptLexer lexer = line.getLexer();
+            int ind = lexer.indexOfToken("says", ScriptLexer.ACTION);
+            if (ind >= 0)
+                _text = line.getText().substring(lexer.getTokenEnd(ind)).replace(",", "").replace("\"", "").trim();
+        }
+
         /**
          * Runs the action.
          */
@@ -280,10 +309,8 @@ public class ActorAction extends Action {
             StageView stage = line.getScript().getStage();
 
             // Get text string
-            String textLine = line.getText().replace(",", "").replace("\"", "");
-            int ind = textLine.indexOf("says");
-            if (ind < 0) return;
-            String str = textLine.substring(ind + 4).trim();
+            String str = _text;
+            if (str == null) return;
 
             // Create, configure and add SpeakView
             SpeakView speakView = new SpeakView();
@@ -5,6 +5,7 @@ import puppets.Puppet;
 import puppets.PuppetAction;
 import puppets.PuppetImager;
 import puppets.PuppetUtils;
+import puppets.WebCache;
 import snap.geom.Insets;
 import snap.gfx.*;
 import snap.util.*;
@@ -21,15 +22,24 @@ public class Asset implements Loadable {
     // The path and URL string
     String _path, _urls;
 
-    // The image
-    Image _img, _imgFlipX;
+    // The index root
+    String _root = ROOT;
+
+    // The image (volatile so lazy init is safe when assets are shared by players on multiple threads)
+    volatile Image _img;
 
     // The height
     double _height;
 
+    // The image cache of index (shared cache if not set)
+    AssetImageCache _imageCache;
+
     // The Index Root
     static String ROOT = AssetIndex.ROOT;
 
+    // Whether to check for new GIF files to convert to sprite sheets (off in production)
+    static boolean _checkNewGifs = !Boolean.getBoolean("comics.production");
+
     /**
      * Creates an Asset.
      */
@@ -42,10 +52,19 @@ public class Asset implements Loadable {
      */
     public Asset(Map aMap)
     {
+        this(aMap, ROOT);
+    }
+
+    /**
+     * Creates an Asset for map and index root.
+     */
+    public Asset(Map aMap, String aRoot)
+    {
+        _root = aRoot;
         _name = (String) aMap.get("Name");
-        _nameLC = _name.toLowerCase();
+        _nameLC = _name.toLowerCase(Locale.ROOT);
         _path = '/' + (String) aMap.get("File");
-        _urls = ROOT + "actors/" + _path;
+        _urls = aRoot + "actors/" + _path;
 
         Number hnum = (Number) aMap.get("Height");
         _height = hnum != null ? hnum.doubleValue() : 0;
@@ -64,7 +83,7 @@ public class Asset implements Loadable {
      */
     public String getNameLC()
     {
-        return _nameLC != null ? _nameLC : (_nameLC = _name.toLowerCase());
+        return _nameLC != null ? _nameLC : (_nameLC = _name.toLowerCase(Locale.ROOT));
     }
 
     /**
@@ -80,7 +99,33 @@ public class Asset implements Loadable {
      */
     public Image getImage()
     {
-        return _img != null ? _img : (_img = getImageImpl());
+        // Get image (loading if needed)
+        Image img = _img;
+        if (img == null) {
+            synchronized (this) {
+                img = _img != null ? _img : (_img = getImageImpl());
+            }
+        }
+
+        // Mark image used in image cache and return
+        getImageCache().imageUsed(this, img);
+        return img;
+    }
+
+    /**
+     * Returns the image cache that tracks this asset's image.
+     */
+    public AssetImageCache getImageCache()
+    {
+        return _imageCache != null ? _imageCache : AssetImageCache.get();
+    }
+
+    /**
+     * Releases the image (it will reload on next getImage()).
+     */
+    protected synchronized void releaseImage()
+    {
+        _img = null;
     }
 
     /**
@@ -89,27 +134,40 @@ public class Asset implements Loadable {
     protected Image getImageImpl()
     {
         WebURL url = WebURL.getUrl(_urls);
-        Image img = Image.getImageForSource(url);
-
-        if (!SnapEnv.isTeaVM && isNewGifAvailable(url)) {
-            saveSpriteSheet(url);
-            img = Image.getImageForSource(url);
+        Image img = WebCache.getImageForSource(url, this::releaseImage);
+
+        // If new GIF available, convert to sprite sheet
+        if (_checkNewGifs && !SnapEnv.isTeaVM && isNewGifAvailable()) {
+
+            // If old sheet exists, convert in background and reload when done
+            AssetManifest manifest = AssetManifest.getManifestForRoot(_root);
+            String pngPath = getRootPath();
+            if (manifest.getLastModTime(pngPath) > 0)
+                SpriteSheetConverter.getShared().convertLater(url, () -> spriteSheetChanged());
+
+            // Otherwise convert now
+            else {
+                SpriteSheetConverter.getShared().convert(url);
+                img = Image.getImageForSource(url);
+            }
+            manifest.setLastModTime(pngPath, System.currentTimeMillis());
         }
         return img;
     }
 
     /**
-     * Returns the image.
+     * Called when sprite sheet is converted in background to clear image (so it reloads with new sheet).
      */
-    public Image getImageFlipX()
+    protected void spriteSheetChanged()
     {
-        if (_imgFlipX != null) return _imgFlipX;
-        Image img = getImage();
-        if (!img.isLoaded()) return img;
-        _imgFlipX = PuppetUtils.getImagesFlipped(img);
-        return _imgFlipX;
+        releaseImage();
     }
 
+    /**
+     * Sets the priority to load image with, for assets that load in background (e.g. PuppetImager.PRIORITY_PLAYING).
+     */
+    public void setLoadPriority(int aPriority)  { }
+
     /**
      * Returns the height in feet.
      */
@@ -170,8 +228,13 @@ public class Asset implements Loadable {
 
         public ActorImage(Map aMap)
         {
-            super(aMap);
-            _urls = ROOT + "actors" + _path;
+            this(aMap, ROOT);
+        }
+
+        public ActorImage(Map aMap, String aRoot)
+        {
+            super(aMap, aRoot);
+            _urls = aRoot + "actors" + _path;
         }
     }
 
@@ -185,6 +248,12 @@ public class Asset implements Loadable {
         // The offset
         double _offsetX;
 
+        // The sprite strip view of strip image (frames reference strip instead of being copied)
+        SpriteStrip _strip;
+
+        // The first frame image (the only frame copied from strip)
+        Image _frameImage;
+
         /**
          * Creates a new AnimImage for map.
          */
@@ -194,8 +263,13 @@ public class Asset implements Loadable {
 
         public AnimImage(Map aMap)
         {
-            super(aMap);
-            _urls = ROOT + "actors" + _path;
+            this(aMap, ROOT);
+        }
+
+        public AnimImage(Map aMap, String aRoot)
+        {
+            super(aMap, aRoot);
+            _urls = aRoot + "actors" + _path;
             _frameCount = Convert.intValue(aMap.get("FrameCount"));
             _offsetX = Convert.doubleValue(aMap.get("Offset"));
         }
@@ -217,17 +291,50 @@ public class Asset implements Loadable {
         }
 
         /**
-         * Returns the image.
+         * Override to return first frame image (or strip image, if not yet loaded).
          */
-        public Image getImageImpl()
+        public Image getImage()
+        {
+            // Get image (if not loaded or not a strip, just return it)
+            Image img = super.getImage();
+            SpriteStrip strip = img.isLoaded() ? getStrip() : null;
+            if (strip == null) return img;
+
+            // Get first frame image
+            Image frameImage = _frameImage;
+            if (frameImage == null) {
+                synchronized (this) {
+                    frameImage = _frameImage != null ? _frameImage : (_frameImage = strip.getFrameImage(0));
+                }
+            }
+            return frameImage;
+        }
+
+        /**
+         * Returns the sprite strip image (all frames, left to right).
+         */
+        public Image getStripImage()  { return super.getImage(); }
+
+        /**
+         * Returns the sprite strip for strip image (null if not loaded).
+         */
+        public SpriteStrip getStrip()
         {
-            // Get normal image
-            Image img = super.getImageImpl();
+            SpriteStrip strip = _strip;
+            if (strip != null) return strip;
+            Image img = getStripImage();
+            if (img == null || !img.isLoaded()) return null;
+            return _strip = new SpriteStrip(img, _frameCount);
+        }
 
-            // Get frame images, create image set, and return first image
-            List<Image> frameImages = ImageUtils.getFrameImagesForSpriteStripImageAndFrameCount(img, _frameCount);
-            ImageSet imageSet = new ImageSet(frameImages);
-            return imageSet.getImage(0);
+        /**
+         * Override to clear strip and frame image.
+         */
+        protected synchronized void releaseImage()
+        {
+            super.releaseImage();
+            _strip = null;
+            _frameImage = null;
         }
     }
 
@@ -239,6 +346,10 @@ public class Asset implements Loadable {
         // The Puppet
         Puppet _pup;
 
+        // The PuppetImager and the priority to render with
+        PuppetImager _imager;
+        int _loadPriority = PuppetImager.PRIORITY_PREFETCH;
+
         /**
          * Creates a new ActorImage for map.
          */
@@ -257,8 +368,18 @@ public class Asset implements Loadable {
         {
             PuppetAction act = PuppetUtils.getActionFile().getActionForName("Resting");
             Insets ins = new Insets(0, 0, 10, 0);
-            Image img = new PuppetImager(_pup, act, 1, ins).getImage();
-            return img;
+            _imager = new PuppetImager(_pup, act, 1, ins, _loadPriority);
+            return _imager.getImage();
+        }
+
+        /**
+         * Override to set priority of puppet imager.
+         */
+        public void setLoadPriority(int aPriority)
+        {
+            _loadPriority = aPriority;
+            if (_imager != null)
+                _imager.setPriority(aPriority);
         }
     }
 
@@ -273,6 +394,10 @@ public class Asset implements Loadable {
         // The Action
         PuppetAction _act;
 
+        // The PuppetImager and the priority to render with
+        PuppetImager _imager;
+        int _loadPriority = PuppetImager.PRIORITY_PREFETCH;
+
         /**
          * Creates a new AnimImage for map.
          */
@@ -283,19 +408,39 @@ public class Asset implements Loadable {
             _pup = PuppetUtils.getPuppetFile().getPuppetForName(aPupName);
             _act = PuppetUtils.getActionFile().getActionForName(anActName);
 
-            _frameCount = _act.getMaxTime() / 25 + 1;
+            _frameCount = _act.getMaxTime() / PuppetImager.FRAME_DELAY_MILLIS + 1;
             _offsetX = .25;
         }
 
+        /**
+         * Override to return null, since puppet frames are rendered as separate images.
+         */
+        public Image getStripImage()  { return null; }
+
+        /**
+         * Override to return null, since puppet frames are rendered as separate images.
+         */
+        public SpriteStrip getStrip()  { return null; }
+
         /**
          * Returns the image.
          */
         public Image getImageImpl()
         {
             Insets ins = new Insets(50, 50, 10, 50);
-            Image img = new PuppetImager(_pup, _act, 1, ins).getImage();
+            _imager = new PuppetImager(_pup, _act, 1, ins, _loadPriority);
             _height = (_pup.getBounds().height + ins.top + 17.3) / 100;
-            return img;
+            return _imager.getImage();
+        }
+
+        /**
+         * Override to set priority of puppet imager.
+         */
+        public void setLoadPriority(int aPriority)
+        {
+            _loadPriority = aPriority;
+            if (_imager != null)
+                _imager.setPriority(aPriority);
         }
     }
 
@@ -309,53 +454,66 @@ public class Asset implements Loadable {
          */
         public SetImage(Map aMap)
         {
-            super(aMap);
-            _urls = ROOT + "settings" + _path;
+            this(aMap, ROOT);
+        }
+
+        public SetImage(Map aMap, String aRoot)
+        {
+            super(aMap, aRoot);
+            _urls = aRoot + "settings" + _path;
         }
     }
 
-    private static boolean isNewGifAvailable(WebURL aURL)
+    /**
+     * Returns whether there is a GIF file newer than the PNG sprite sheet (using root manifest instead of requests).
+     */
+    private boolean isNewGifAvailable()
     {
-        // If not looking for png file return false
-        if (!aURL.getPath().endsWith(".png")) return false;
+        // If not looking for png file in root, return false
+        if (!_urls.endsWith(".png") || !_urls.startsWith(_root)) return false;
 
-        // Get GIF URL
-        WebURL url2 = WebURL.getUrl(FilePathUtils.getPeerPath(aURL.getString(), aURL.getFilenameSimple() + ".gif"));
+        // Get PNG and GIF paths relative to root
+        String pngPath = getRootPath();
+        String gifPath = pngPath.substring(0, pngPath.length() - 4) + ".gif";
 
-        // If no gif file or it's older than
-        long pngMod = aURL.isFound() ? aURL.getHead().getLastModTime() : 0;
-        long gifMod = url2.isFound() ? url2.getHead().getLastModTime() : 0;
-        return gifMod > pngMod;
+        // Return whether GIF file is newer
+        AssetManifest manifest = AssetManifest.getManifestForRoot(_root);
+        return manifest.getLastModTime(gifPath) > manifest.getLastModTime(pngPath);
     }
 
     /**
-     * Saves an image to a sprite sheet.
+     * Returns the path of image file relative to root.
      */
-    private static void saveSpriteSheet(WebURL aURL)
+    private String getRootPath()
     {
-        // Get URL for GIF file
-        WebURL url = WebURL.getUrl(FilePathUtils.getPeerPath(aURL.getString(), aURL.getFilenameSimple() + ".gif"));
-        Image img = Image.getImageForSource(url);
-
-        // Scale image
-        if (img.getImageSet() != null) img = img.getImageSet().getImageScaled(.5);
-        else img = img.copyForScale(.5);
-
-        // Create sprite sheet image, get PNG bytes, set in file and save
-        Image sheet = img.getImageSet() != null ? img.getImageSet().getSpriteSheetImage() : img;
-        byte bytes[] = sheet.getBytesPNG();
-        WebFile file = aURL.createFile(false);
-        file.setBytes(bytes);
-        file.save();
+        return _urls.substring(_root.length()).replace("//", "/");
     }
 
+    /**
+     * Returns whether to check for new GIF files to convert to sprite sheets.
+     */
+    public static boolean isCheckNewGifs()  { return _checkNewGifs; }
+
+    /**
+     * Sets whether to check for new GIF files to convert to sprite sheets (off in production).
+     */
+    public static void setCheckNewGifs(boolean aValue)  { _checkNewGifs = aValue; }
+
     /**
      * Returns an anim asset for name.
      */
     public static AnimImage getAnimAsset(String aStarName, String anAnimName)
+    {
+        return getAnimAsset(AssetIndex.get(), aStarName, anAnimName);
+    }
+
+    /**
+     * Returns an anim asset for name from given index.
+     */
+    public static AnimImage getAnimAsset(AssetIndex anIndex, String aStarName, String anAnimName)
     {
         String name = FilePathUtils.getFilenameSimple(aStarName);
-        return AssetIndex.get().getAnimAsset(name, anAnimName);
+        return anIndex.getAnimAsset(name, anAnimName);
     }
 
 }
\ No newline at end of file
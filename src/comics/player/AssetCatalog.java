@@ -0,0 +1,345 @@
+package comics.player;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import snap.util.*;
+import snap.web.WebURL;
+import comics.player.Asset.*;
+
+/**
+ * A class to read a compact binary asset catalog (index.bin) compiled from index.json, so AssetIndex can look up
+ * entries by name without parsing JSON or creating an asset for every entry. A local catalog is only used if the
+ * index.json length and mod time recorded in its header still match (otherwise AssetIndex falls back to index.json).
+ *
+ * Format (big-endian):
+ *   Header: magic, version, record count, hash table size, records offset, hash table offset, string table offset,
+ *           source (index.json) length, source mod time
+ *   Records: fixed-width (type, name string offset, file string offset, height, frame count, offset x)
+ *   Hash table: record index + 1 (0 is empty) for hash of type and lowercase name (linear probing)
+ *   String table: UTF-8 strings, each preceded by unsigned short length
+ *
+ * Run main() with ComicLib root directory to compile index.json to index.bin.
+ */
+public class AssetCatalog {
+
+    // The catalog bytes
+    ByteBuffer  _buf;
+
+    // The record count and hash table size
+    int  _recordCount, _hashSize;
+
+    // The records, hash table and string table offsets
+    int  _recordsOffset, _hashOffset, _stringsOffset;
+
+    // The length and mod time of index.json the catalog was compiled from
+    long  _sourceLength, _sourceModTime;
+
+    // Constants for record types
+    public static final int ACTOR = 0;
+    public static final int ANIM = 1;
+    public static final int SET = 2;
+
+    // Constants for format
+    static final int MAGIC = 0x43534143; // "CSAC"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 44;
+    static final int RECORD_SIZE = 24;
+
+    // The catalog file name
+    public static final String CATALOG_FILENAME = "index.bin";
+
+    /**
+     * Constructor for given catalog bytes.
+     */
+    public AssetCatalog(ByteBuffer aBuf)
+    {
+        _buf = aBuf;
+        if (!isSupported(aBuf))
+            throw new RuntimeException("AssetCatalog: Unsupported catalog format");
+        _recordCount = _buf.getInt(8);
+        _hashSize = _buf.getInt(12);
+        _recordsOffset = _buf.getInt(16);
+        _hashOffset = _buf.getInt(20);
+        _stringsOffset = _buf.getInt(24);
+        _sourceLength = _buf.getLong(28);
+        _sourceModTime = _buf.getLong(36);
+    }
+
+    /**
+     * Returns the length of index.json the catalog was compiled from.
+     */
+    public long getSourceLength()  { return _sourceLength; }
+
+    /**
+     * Returns the mod time of index.json the catalog was compiled from.
+     */
+    public long getSourceModTime()  { return _sourceModTime; }
+
+    /**
+     * Returns the number of records.
+     */
+    public int getRecordCount()  { return _recordCount; }
+
+    /**
+     * Returns the type of record at index.
+     */
+    public int getType(int anIndex)  { return _buf.get(getRecordStart(anIndex)); }
+
+    /**
+     * Returns the name of record at index.
+     */
+    public String getName(int anIndex)  { return getString(_buf.getInt(getRecordStart(anIndex) + 4)); }
+
+    /**
+     * Returns the file of record at index.
+     */
+    public String getFile(int anIndex)  { return getString(_buf.getInt(getRecordStart(anIndex) + 8)); }
+
+    /**
+     * Returns the height of record at index.
+     */
+    public float getHeight(int anIndex)  { return _buf.getFloat(getRecordStart(anIndex) + 12); }
+
+    /**
+     * Returns the frame count of record at index.
+     */
+    public int getFrameCount(int anIndex)  { return _buf.getInt(getRecordStart(anIndex) + 16); }
+
+    /**
+     * Returns the offset x of record at index.
+     */
+    public float getOffsetX(int anIndex)  { return _buf.getFloat(getRecordStart(anIndex) + 20); }
+
+    /**
+     * Returns the byte offset of record at index.
+     */
+    private int getRecordStart(int anIndex)  { return _recordsOffset + anIndex * RECORD_SIZE; }
+
+    /**
+     * Returns the string at given string table offset.
+     */
+    private String getString(int anOffset)
+    {
+        int start = _stringsOffset + anOffset;
+        int length = _buf.getShort(start) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        _buf.get(start + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the index of record with given type and name (ignoring case), or -1 if not found.
+     */
+    public int indexOf(int aType, String aName)
+    {
+        if (_hashSize == 0) return -1;
+        String nameLC = aName.toLowerCase(Locale.ROOT);
+        int mask = _hashSize - 1;
+        for (int slot = getHash(aType, nameLC) & mask; ; slot = (slot + 1) & mask) {
+            int index = _buf.getInt(_hashOffset + slot * 4) - 1;
+            if (index < 0)
+                return -1;
+            if (getType(index) == aType && getName(index).equalsIgnoreCase(nameLC))
+                return index;
+        }
+    }
+
+    /**
+     * Returns the indexes of all records with given type (in catalog order).
+     */
+    public int[] getIndexesForType(int aType)
+    {
+        int[] indexes = new int[_recordCount];
+        int count = 0;
+        for (int i = 0; i < _recordCount; i++)
+            if (getType(i) == aType)
+                indexes[count++] = i;
+        return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Creates a new asset for record at index and given index root.
+     */
+    public Asset createAsset(int anIndex, String aRoot)
+    {
+        Map<String, Object> map = new HashMap<>();
+        map.put("Name", getName(anIndex));
+        map.put("File", getFile(anIndex));
+        float height = getHeight(anIndex);
+        if (height > 0) map.put("Height", height);
+
+        switch (getType(anIndex)) {
+            case ACTOR: return new ActorImage(map, aRoot);
+            case ANIM:
+                map.put("FrameCount", getFrameCount(anIndex));
+                map.put("Offset", getOffsetX(anIndex));
+                return new AnimImage(map, aRoot);
+            case SET: return new SetImage(map, aRoot);
+            default: return null;
+        }
+    }
+
+    /**
+     * Returns the hash for given type and lowercase name.
+     */
+    private static int getHash(int aType, String aNameLC)
+    {
+        int hash = aNameLC.hashCode() * 31 + aType;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns whether given bytes hold a catalog in supported format.
+     */
+    private static boolean isSupported(ByteBuffer aBuf)
+    {
+        return aBuf.limit() >= HEADER_SIZE && aBuf.getInt(0) == MAGIC && aBuf.getInt(4) == VERSION;
+    }
+
+    /**
+     * Returns the catalog for given index root, or null if not found, not readable, not supported or out of date with
+     * index.json.
+     */
+    public static AssetCatalog getCatalogForRoot(String aRoot)
+    {
+        try {
+            // If local file, memory-map it (if index.json has changed since catalog was compiled, return null)
+            if (!SnapEnv.isTeaVM && aRoot.startsWith("/")) {
+                File file = new File(aRoot, CATALOG_FILENAME);
+                if (!file.exists()) return null;
+                ByteBuffer buf;
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                if (!isSupported(buf)) return null;
+                AssetCatalog catalog = new AssetCatalog(buf);
+                File jsonFile = new File(aRoot, "index.json");
+                if (jsonFile.exists() && (jsonFile.length() != catalog._sourceLength || jsonFile.lastModified() != catalog._sourceModTime)) {
+                    System.err.println("AssetCatalog: " + file + " is out of date with index.json (using index.json)");
+                    return null;
+                }
+                return catalog;
+            }
+
+            // Otherwise, fetch bytes (remote catalog is compiled and deployed with its index.json)
+            WebURL url = WebURL.getUrl(aRoot + CATALOG_FILENAME);
+            byte[] bytes = url != null ? url.getBytes() : null;
+            if (bytes == null) return null;
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            return isSupported(buf) ? new AssetCatalog(buf) : null;
+        }
+
+        // Complain and return null, so AssetIndex falls back to index.json
+        catch (Exception e) {
+            System.err.println("AssetCatalog.getCatalogForRoot: Error reading catalog (using index.json): " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a catalog for given index.json root object (and index.json file length and mod time) to given stream.
+     */
+    public static void writeCatalog(JsonObject anIndex, long aSourceLength, long aSourceModTime, OutputStream aStream) throws IOException
+    {
+        // Get entries for each section with type
+        List<Map> entries = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        String[] sectionNames = { "Actors", "Anims", "Settings" };
+        for (int type = ACTOR; type <= SET; type++) {
+            JsonArray section = (JsonArray) anIndex.getValue(sectionNames[type]);
+            for (int i = 0; section != null && i < section.getValueCount(); i++) {
+                entries.add(((JsonObject) section.getValue(i)).getAsMap());
+                types.add(type);
+            }
+        }
+
+        // Write string table (shared strings stored once) and records
+        int recordCount = entries.size();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringsOut = new DataOutputStream(strings);
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        ByteBuffer records = ByteBuffer.allocate(recordCount * RECORD_SIZE);
+        for (int i = 0; i < recordCount; i++) {
+            Map entry = entries.get(i);
+            records.put(types.get(i).byteValue()).put((byte) 0).putShort((short) 0);
+            records.putInt(addString(stringsOut, stringOffsets, (String) entry.get("Name")));
+            records.putInt(addString(stringsOut, stringOffsets, (String) entry.get("File")));
+            records.putFloat((float) Convert.doubleValue(entry.get("Height")));
+            records.putInt(Convert.intValue(entry.get("FrameCount")));
+            records.putFloat((float) Convert.doubleValue(entry.get("Offset")));
+        }
+
+        // Write hash table (power of two at most half full, first entry for key wins like index.json load)
+        int hashSize = Integer.highestOneBit(Math.max(recordCount, 1) * 2 - 1) << 1;
+        int mask = hashSize - 1;
+        int[] hashTable = new int[hashSize];
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < recordCount; i++) {
+            String nameLC = ((String) entries.get(i).get("Name")).toLowerCase(Locale.ROOT);
+            if (!keys.add(types.get(i) + ":" + nameLC)) continue;
+            int slot = getHash(types.get(i), nameLC) & mask;
+            while (hashTable[slot] != 0) slot = (slot + 1) & mask;
+            hashTable[slot] = i + 1;
+        }
+
+        // Write header, records, hash table and string table
+        int recordsOffset = HEADER_SIZE;
+        int hashOffset = recordsOffset + recordCount * RECORD_SIZE;
+        int stringsOffset = hashOffset + hashSize * 4;
+        DataOutputStream out = new DataOutputStream(aStream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(recordCount);
+        out.writeInt(hashSize);
+        out.writeInt(recordsOffset);
+        out.writeInt(hashOffset);
+        out.writeInt(stringsOffset);
+        out.writeLong(aSourceLength);
+        out.writeLong(aSourceModTime);
+        out.write(records.array());
+        for (int hashEntry : hashTable) out.writeInt(hashEntry);
+        stringsOut.flush();
+        strings.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Adds given string to string table (if not already added) and returns its offset.
+     */
+    private static int addString(DataOutputStream aStream, Map<String, Integer> theOffsets, String aStr) throws IOException
+    {
+        String str = aStr != null ? aStr : "";
+        Integer offset = theOffsets.get(str);
+        if (offset != null) return offset;
+        offset = aStream.size();
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        aStream.writeShort(bytes.length);
+        aStream.write(bytes);
+        theOffsets.put(str, offset);
+        return offset;
+    }
+
+    /**
+     * Compiles index.json in given ComicLib root directory to index.bin.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.err.println("Usage: AssetCatalog <ComicLib root directory>");
+            return;
+        }
+        String root = args[0].endsWith("/") ? args[0] : args[0] + '/';
+
+        File jsonFile = new File(root, "index.json");
+        WebURL url = WebURL.getUrl(root + "index.json");
+        JsonObject index = (JsonObject) JsonNode.readSource(url);
+        File file = new File(root, CATALOG_FILENAME);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            writeCatalog(index, jsonFile.length(), jsonFile.lastModified(), out);
+        }
+        System.out.println("AssetCatalog: Wrote " + file);
+    }
+}
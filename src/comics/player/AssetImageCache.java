@@ -0,0 +1,209 @@
+package comics.player;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import snap.gfx.*;
+
+/**
+ * A class to keep loaded asset images within a byte budget (based on decoded pixel size), by releasing least recently
+ * used images whose assets aren't in use (shown by a StageView or held by its player's checkpoints). Released assets
+ * reload their image on next Asset.getImage(). Marking an image used doesn't lock: entries hold an access stamp and
+ * only trim (when over budget) sorts and releases under lock.
+ */
+public class AssetImageCache {
+
+    // The max bytes of loaded images
+    volatile long  _maxBytes;
+
+    // The total bytes of loaded images
+    AtomicLong  _totalBytes = new AtomicLong();
+
+    // The entries for assets with loaded (or loading) images
+    Map<Asset, Entry>  _entries = new ConcurrentHashMap<>();
+
+    // The clock for access stamps
+    AtomicLong  _clock = new AtomicLong();
+
+    // The assets in use for owners (e.g. StageView), published as snapshots by owner thread (owners weakly held)
+    Map<Object, Set<Asset>>  _assetsInUse = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // The number of images released
+    int  _releaseCount;
+
+    // The shared cache
+    private static AssetImageCache  _shared = new AssetImageCache(Long.getLong("comics.imageCache.maxBytes", DEFAULT_MAX_BYTES));
+
+    // Constants
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    /**
+     * Constructor for given byte budget.
+     */
+    public AssetImageCache(long aMaxBytes)
+    {
+        _maxBytes = aMaxBytes;
+    }
+
+    /**
+     * Returns the max bytes of loaded images.
+     */
+    public long getMaxBytes()  { return _maxBytes; }
+
+    /**
+     * Sets the max bytes of loaded images.
+     */
+    public void setMaxBytes(long aValue)
+    {
+        _maxBytes = aValue;
+        trim();
+    }
+
+    /**
+     * Returns the total bytes of loaded images.
+     */
+    public long getTotalBytes()  { return _totalBytes.get(); }
+
+    /**
+     * Returns the number of images released.
+     */
+    public synchronized int getReleaseCount()  { return _releaseCount; }
+
+    /**
+     * Sets the assets in use for given owner (null to remove). Set should not be modified after call.
+     */
+    public void setAssetsInUse(Object anOwner, Set<Asset> theAssets)
+    {
+        if (theAssets != null)
+            _assetsInUse.put(anOwner, theAssets);
+        else _assetsInUse.remove(anOwner);
+    }
+
+    /**
+     * Called when asset image is used to mark it recently used (and measure it once loaded).
+     */
+    public void imageUsed(Asset anAsset, Image anImage)
+    {
+        // Get entry and mark used (if already measured, just return)
+        Entry entry = _entries.get(anAsset);
+        if (entry == null)
+            entry = _entries.computeIfAbsent(anAsset, Entry::new);
+        entry._lastUsed = _clock.incrementAndGet();
+        if (entry._bytes > 0) return;
+
+        // If image not loaded, measure when loaded (once per entry)
+        if (anImage == null) return;
+        if (!anImage.isLoaded()) {
+            if (!entry._measureLater) {
+                entry._measureLater = true;
+                anImage.addLoadListener(() -> imageLoaded(anAsset, anImage));
+            }
+            return;
+        }
+
+        // Measure image and add
+        measure(entry, anImage);
+    }
+
+    /**
+     * Called when image that wasn't loaded when used finishes loading to measure it (if asset still has it).
+     */
+    protected void imageLoaded(Asset anAsset, Image anImage)
+    {
+        Entry entry = _entries.get(anAsset);
+        if (entry == null || anAsset._img != anImage) return;
+        entry._measureLater = false;
+        measure(entry, anImage);
+    }
+
+    /**
+     * Measures image for given entry and trims if over budget.
+     */
+    private void measure(Entry anEntry, Image anImage)
+    {
+        // Set bytes (only first thread to measure adds to total)
+        long bytes = getImageBytes(anImage);
+        synchronized (anEntry) {
+            if (anEntry._bytes > 0 || bytes == 0) return;
+            anEntry._bytes = bytes;
+        }
+
+        // If over budget, release images
+        if (_totalBytes.addAndGet(bytes) > _maxBytes)
+            trim();
+    }
+
+    /**
+     * Releases least recently used images (whose assets aren't in use) until total is within budget.
+     */
+    protected synchronized void trim()
+    {
+        // Get assets in use
+        Set<Asset> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (_assetsInUse) {
+            for (Set<Asset> assets : _assetsInUse.values())
+                inUse.addAll(assets);
+        }
+
+        // Get measured entries not in use, sorted from least recently used (by stamp snapshot, since uses continue)
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : _entries.values()) {
+            if (entry._bytes == 0 || inUse.contains(entry._asset)) continue;
+            entry._trimStamp = entry._lastUsed;
+            entries.add(entry);
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry._trimStamp));
+
+        // Iterate over entries and release images
+        for (Entry entry : entries) {
+            if (_totalBytes.get() <= _maxBytes) break;
+            if (!_entries.remove(entry._asset, entry)) continue;
+            entry._asset.releaseImage();
+            _totalBytes.addAndGet(-entry._bytes);
+            _releaseCount++;
+        }
+    }
+
+    /**
+     * Returns the decoded byte size of given image (sum of frames if image set), or 0 if not loaded.
+     */
+    public static long getImageBytes(Image anImage)
+    {
+        if (anImage == null || !anImage.isLoaded()) return 0;
+        ImageSet imageSet = anImage.getImageSet();
+        if (imageSet == null)
+            return (long) anImage.getPixWidth() * anImage.getPixHeight() * 4;
+        long bytes = 0;
+        for (Image img : imageSet.getImages())
+            bytes += (long) img.getPixWidth() * img.getPixHeight() * 4;
+        return bytes;
+    }
+
+    /**
+     * Returns the shared cache.
+     */
+    public static AssetImageCache get()  { return _shared; }
+
+    /**
+     * A class to hold the image bytes and last use stamp of an asset.
+     */
+    private static class Entry {
+
+        // The asset
+        final Asset  _asset;
+
+        // The image bytes (0 if not yet measured)
+        volatile long  _bytes;
+
+        // The access stamp of last use and its snapshot for trim
+        volatile long  _lastUsed;
+        long  _trimStamp;
+
+        // Whether a load listener is set to measure image when loaded
+        volatile boolean  _measureLater;
+
+        /**
+         * Constructor.
+         */
+        Entry(Asset anAsset)  { _asset = anAsset; }
+    }
+}
@@ -1,6 +1,9 @@
 package comics.player;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import puppets.Puppet;
 import puppets.PuppetAction;
@@ -11,21 +14,49 @@ import snap.web.*;
 import comics.player.Asset.*;
 
 /**
- * A class to manage animation assets (images).
+ * A class to manage animation assets (images). Lookups are safe from multiple threads: reads don't lock and
+ * puppet assets are created once per name. The index file loads in the background: until it is loaded, lookups
+ * only find puppet assets (use isLoaded()/addLoadListener() to wait). If a binary catalog (index.bin, see
+ * AssetCatalog) is found, index assets are read from it lazily instead.
  */
-public class AssetIndex {
+public class AssetIndex implements Loadable {
 
-    // All Assets
-    List<Asset> _assets;
+    // The root path for this index
+    String _root;
 
-    // The actors
-    List<ActorImage> _actors, _actorsPup = new ArrayList<>();
-
-    // The anims
-    List<AnimImage> _anims, _animsPup = new ArrayList<>();
+    // The image cache for assets of this index
+    final AssetImageCache _imageCache;
 
     // The settings
-    List<SetImage> _sets;
+    final List<SetImage> _sets = new CopyOnWriteArrayList<>();
+
+    // The actors, puppet actors and settings by lowercase name
+    final Map<String, ActorImage> _actorsByName = new ConcurrentHashMap<>(), _actorsPupByName = new ConcurrentHashMap<>();
+    final Map<String, SetImage> _setsByName = new ConcurrentHashMap<>();
+
+    // The anims and puppet anims by lowercase actor name, then lowercase anim name
+    final Map<String, Map<String, AnimImage>> _animsByActor = new ConcurrentHashMap<>(), _animsPupByActor = new ConcurrentHashMap<>();
+
+    // The root node of actor path trie (replaced when index is loaded, built lazily for catalog)
+    volatile PathNode _actorPaths = new PathNode();
+
+    // The binary catalog (if found) to look up index assets lazily instead of loading index.json
+    volatile AssetCatalog _catalog;
+
+    // Whether index file is loaded
+    volatile boolean _loaded;
+
+    // The listeners to call when index file is loaded
+    List<Runnable> _loadListeners = new ArrayList<>();
+
+    // The lowercase names known not to be puppets or puppet actions (negative lookup cache)
+    final BoundedNameSet _missingPupNames = new BoundedNameSet(MISSING_NAMES_MAX), _missingActNames = new BoundedNameSet(MISSING_NAMES_MAX);
+
+    // The PuppetFile and ActionFile mod counts when negative lookup caches were last valid
+    volatile int _pupFileModCount, _actFileModCount;
+
+    // The max number of names in negative lookup caches
+    static final int MISSING_NAMES_MAX = 1024;
 
     // The root path
     static String ROOT = "/Users/jeff/Dev/ComicLib/";
@@ -34,56 +65,182 @@ public class AssetIndex {
     static AssetIndex _shared = new AssetIndex();
 
     /**
-     * Creates the index.
+     * Creates the index for default root.
      */
     public AssetIndex()
     {
-        if (SnapEnv.isTeaVM)
-            ROOT = "https://reportmill.com/ComicLib/";
+        this(getDefaultRoot());
+    }
 
-        WebURL url = WebURL.getUrl(ROOT + "index.json");
+    /**
+     * Creates the index for given root path (a directory or URL string ending in '/' that holds index.json).
+     * The index file is loaded in the background.
+     */
+    public AssetIndex(String aRoot)
+    {
+        this(aRoot, AssetImageCache.get());
+    }
+
+    /**
+     * Creates the index for given root path and image cache (so players on separate threads can each have their own).
+     */
+    public AssetIndex(String aRoot, AssetImageCache anImageCache)
+    {
+        _root = aRoot;
+        _imageCache = anImageCache;
+        Thread loadThread = new Thread(this::loadIndex, "AssetIndex.loadIndex");
+        loadThread.setDaemon(true);
+        loadThread.start();
+    }
+
+    /**
+     * Loads the index (binary catalog if available, otherwise index.json).
+     */
+    protected void loadIndex()
+    {
+        try {
+            // If binary catalog found, just use that (entries are read lazily)
+            AssetCatalog catalog = AssetCatalog.getCatalogForRoot(_root);
+            if (catalog != null) {
+                _catalog = catalog;
+                _actorPaths = null;
+            }
+
+            // Otherwise load index.json
+            else loadIndexJson();
+        }
+
+        // Complain, but still mark as loaded so players don't wait forever
+        catch (Exception e) {
+            System.err.println("AssetIndex.loadIndex: Error loading index: " + e);
+        }
+
+        // Mark loaded and notify listeners
+        List<Runnable> loadListeners;
+        synchronized (this) {
+            _loaded = true;
+            loadListeners = _loadListeners;
+            _loadListeners = null;
+        }
+        for (Runnable loadListener : loadListeners)
+            loadListener.run();
+    }
+
+    /**
+     * Loads the index.json file and publishes each section as it is ready (settings first, since they are needed first).
+     */
+    protected void loadIndexJson()
+    {
+        WebURL url = WebURL.getUrl(_root + "index.json");
         JsonObject root = (JsonObject) JsonNode.readSource(url);
-        JsonArray actors = (JsonArray) root.getValue("Actors");
-        JsonArray anims = (JsonArray) root.getValue("Anims");
+
+        // Get Settings
         JsonArray settings = (JsonArray) root.getValue("Settings");
+        List<SetImage> sets = new ArrayList<>(settings.getValueCount());
+        for (int i = 0; i < settings.getValueCount(); i++) {
+            JsonObject setting = (JsonObject) settings.getValue(i);
+            Map map = setting.getAsMap();
+            sets.add(initAsset(new SetImage(map, _root)));
+        }
+        for (SetImage set : sets)
+            _setsByName.putIfAbsent(set.getNameLC(), set);
+        _sets.addAll(sets);
 
         // Get Actors
-        _assets = new ArrayList<>();
-        _actors = new ArrayList<>();
+        JsonArray actors = (JsonArray) root.getValue("Actors");
+        List<ActorImage> actorImages = new ArrayList<>(actors.getValueCount());
+        PathNode actorPaths = new PathNode();
         for (int i = 0; i < actors.getValueCount(); i++) {
             JsonObject actor = (JsonObject) actors.getValue(i);
             Map map = actor.getAsMap();
-            addAsset(new ActorImage(map));
+            actorImages.add(initAsset(new ActorImage(map, _root)));
+        }
+        for (ActorImage actor : actorImages) {
+            _actorsByName.putIfAbsent(actor.getNameLC(), actor);
+            actorPaths.addPath(actor.getPath());
         }
+        _actorPaths = actorPaths;
 
         // Get Anims
-        _anims = new ArrayList<>();
+        JsonArray anims = (JsonArray) root.getValue("Anims");
+        List<AnimImage> animImages = new ArrayList<>(anims.getValueCount());
         for (int i = 0; i < anims.getValueCount(); i++) {
             JsonObject anim = (JsonObject) anims.getValue(i);
             Map map = anim.getAsMap();
-            addAsset(new AnimImage(map));
+            animImages.add(initAsset(new AnimImage(map, _root)));
         }
+        for (AnimImage anim : animImages)
+            addAnimForName(_animsByActor, anim);
+    }
 
-        // Get Settings
-        _sets = new ArrayList<>();
-        for (int i = 0; i < settings.getValueCount(); i++) {
-            JsonObject setting = (JsonObject) settings.getValue(i);
-            Map map = setting.getAsMap();
-            addAsset(new SetImage(map));
+    /**
+     * Returns whether index file is loaded.
+     */
+    public boolean isLoaded()  { return _loaded; }
+
+    /**
+     * Adds a callback to be triggered when index file is loaded (called on loading thread, or now if already loaded).
+     */
+    public void addLoadListener(Runnable aRun)
+    {
+        synchronized (this) {
+            if (!_loaded) {
+                _loadListeners.add(aRun);
+                return;
+            }
+        }
+        aRun.run();
+    }
+
+    /**
+     * Returns the root path.
+     */
+    public String getRoot()  { return _root; }
+
+    /**
+     * Returns the default root path.
+     */
+    static String getDefaultRoot()
+    {
+        if (SnapEnv.isTeaVM)
+            ROOT = "https://reportmill.com/ComicLib/";
+        return ROOT;
+    }
+
+    /**
+     * Returns the image cache for assets of this index.
+     */
+    public AssetImageCache getImageCache()  { return _imageCache; }
+
+    /**
+     * Configures a new asset for this index (sets image cache) and returns it (called once per asset, from loading or
+     * from lookup map computeIfAbsent).
+     */
+    private <T extends Asset> T initAsset(T anAsset)
+    {
+        anAsset._imageCache = _imageCache;
+        return anAsset;
+    }
+
+    /**
+     * Adds an anim to given map by actor and anim name, for each possible split of "actor-anim" name at a dash.
+     */
+    private static void addAnimForName(Map<String, Map<String, AnimImage>> aMap, AnimImage anAnim)
+    {
+        String name = anAnim.getNameLC();
+        for (int ind = name.indexOf('-'); ind >= 0; ind = name.indexOf('-', ind + 1)) {
+            String actorName = name.substring(0, ind), animName = name.substring(ind + 1);
+            aMap.computeIfAbsent(actorName, k -> new ConcurrentHashMap<>()).putIfAbsent(animName, anAnim);
         }
     }
 
     /**
-     * Adds a new Asset
+     * Returns the anim in given map for given actor and anim name.
      */
-    void addAsset(Asset aAsset)
+    private static AnimImage getAnimForName(Map<String, Map<String, AnimImage>> aMap, String anActor, String anAnim)
     {
-        _assets.add(aAsset);
-        if (aAsset instanceof ActorImagePup) _actorsPup.add((ActorImage) aAsset);
-        else if (aAsset instanceof AnimImagePup) _animsPup.add((AnimImagePup) aAsset);
-        else if (aAsset instanceof ActorImage) _actors.add((ActorImage) aAsset);
-        else if (aAsset instanceof AnimImage) _anims.add((AnimImage) aAsset);
-        else if (aAsset instanceof SetImage) _sets.add((SetImage) aAsset);
+        Map<String, AnimImage> actorAnims = aMap.get(anActor.toLowerCase(Locale.ROOT));
+        return actorAnims != null ? actorAnims.get(anAnim.toLowerCase(Locale.ROOT)) : null;
     }
 
     /**
@@ -95,12 +252,9 @@ public class AssetIndex {
         if (aip != null)
             return aip;
 
-        String name = aName.toLowerCase();
-        for (ActorImage asset : _actors) {
-            if (name.equals(asset.getNameLC()))
-                return asset;
-        }
-        return null;
+        String name = aName.toLowerCase(Locale.ROOT);
+        ActorImage asset = _actorsByName.get(name);
+        return asset != null ? asset : getCatalogAsset(_actorsByName, AssetCatalog.ACTOR, name);
     }
 
     /**
@@ -108,20 +262,16 @@ public class AssetIndex {
      */
     public ActorImage getActorPupAsset(String aName)
     {
-        String name = aName.toLowerCase();
-        for (ActorImage asset : _actorsPup) {
-            if (name.equals(asset.getNameLC()))
-                return asset;
-        }
-
-        Puppet pup = PuppetUtils.getPuppetFile().getPuppetForName(aName);
-        if (pup != null) {
-            ActorImage ai = new ActorImagePup(aName);
-            addAsset(ai);
-            return ai;
-        }
-
-        return null;
+        String name = aName.toLowerCase(Locale.ROOT);
+        ActorImage asset = _actorsPupByName.get(name);
+        if (asset != null)
+            return asset;
+
+        // If puppet found, create asset once (concurrent callers for same name wait and get same asset)
+        Puppet pup = getPuppetForName(name);
+        if (pup == null)
+            return null;
+        return _actorsPupByName.computeIfAbsent(name, k -> initAsset(new ActorImagePup(aName)));
     }
 
     /**
@@ -143,12 +293,18 @@ public class AssetIndex {
         if (aip != null)
             return aip;
 
-        String name = anActor.toLowerCase() + '-' + anAnim.toLowerCase();
-        for (AnimImage asset : _anims) {
-            if (name.equals(asset.getNameLC()))
-                return asset;
-        }
-        return null;
+        AnimImage asset = getAnimForName(_animsByActor, anActor, anAnim);
+        if (asset != null)
+            return asset;
+
+        // Get from catalog by full anim name ("actor-anim")
+        AssetCatalog catalog = _catalog;
+        String actorName = anActor.toLowerCase(Locale.ROOT), animName = anAnim.toLowerCase(Locale.ROOT);
+        int index = catalog != null ? catalog.indexOf(AssetCatalog.ANIM, actorName + '-' + animName) : -1;
+        if (index < 0)
+            return null;
+        Map<String, AnimImage> actorAnims = _animsByActor.computeIfAbsent(actorName, k -> new ConcurrentHashMap<>());
+        return actorAnims.computeIfAbsent(animName, k -> initAsset((AnimImage) catalog.createAsset(index, _root)));
     }
 
     /**
@@ -156,23 +312,68 @@ public class AssetIndex {
      */
     public AnimImage getAnimAssetPup(String anActor, String anAnim)
     {
-        String name = anActor.toLowerCase() + '-' + anAnim.toLowerCase();
-        for (AnimImage asset : _animsPup) {
-            if (name.equals(asset.getNameLC()))
-                return asset;
-        }
+        AnimImage asset = getAnimForName(_animsPupByActor, anActor, anAnim);
+        if (asset != null)
+            return asset;
+
+        // If puppet and action found, create asset once (concurrent callers for same names wait and get same asset)
+        String actorName = anActor.toLowerCase(Locale.ROOT), animName = anAnim.toLowerCase(Locale.ROOT);
+        Puppet pup = getPuppetForName(actorName);
+        PuppetAction act = pup != null ? getActionForName(animName) : null;
+        if (pup == null || act == null)
+            return null;
+        Map<String, AnimImage> actorAnims = _animsPupByActor.computeIfAbsent(actorName, k -> new ConcurrentHashMap<>());
+        String pupAnimName = pup.getName() + '-' + act.getName();
+        return actorAnims.computeIfAbsent(animName, k -> initAsset(new AnimImagePup(anActor, anAnim, pupAnimName)));
+    }
 
-        Puppet pup = PuppetUtils.getPuppetFile().getPuppetForName(anActor);
-        PuppetAction act = PuppetUtils.getActionFile().getActionForName(anAnim);
-        if (pup != null && act != null) {
-            AnimImage aip = new AnimImagePup(anActor, anAnim, pup.getName() + '-' + act.getName());
-            addAsset(aip);
-            return aip;
-        }
+    /**
+     * Returns the puppet for given lowercase name (checking negative lookup cache first).
+     */
+    private Puppet getPuppetForName(String aName)
+    {
+        validateMissingNames();
+        if (_missingPupNames.contains(aName))
+            return null;
+        Puppet pup = PuppetUtils.getPuppetFile().getPuppetForName(aName);
+        if (pup == null)
+            _missingPupNames.add(aName);
+        return pup;
+    }
 
-        return null;
+    /**
+     * Returns the puppet action for given lowercase name (checking negative lookup cache first).
+     */
+    private PuppetAction getActionForName(String aName)
+    {
+        validateMissingNames();
+        if (_missingActNames.contains(aName))
+            return null;
+        PuppetAction act = PuppetUtils.getActionFile().getActionForName(aName);
+        if (act == null)
+            _missingActNames.add(aName);
+        return act;
     }
 
+    /**
+     * Clears negative lookup caches if PuppetFile or ActionFile have changed (without locking: a racing clear just
+     * drops some cached misses).
+     */
+    private void validateMissingNames()
+    {
+        int pupFileModCount = PuppetUtils.getPuppetFile().getModCount();
+        if (pupFileModCount != _pupFileModCount) {
+            _missingPupNames.clear();
+            _pupFileModCount = pupFileModCount;
+        }
+        int actFileModCount = PuppetUtils.getActionFile().getModCount();
+        if (actFileModCount != _actFileModCount) {
+            _missingActNames.clear();
+            _actFileModCount = actFileModCount;
+        }
+    }
+
+
     /**
      * Returns the anims image for actor and anim.
      */
@@ -188,12 +389,41 @@ public class AssetIndex {
      */
     public SetImage getSetAsset(String aName)
     {
-        String name = aName.toLowerCase();
-        for (SetImage asset : _sets) {
-            if (name.equals(asset.getNameLC()))
-                return asset;
+        String name = aName.toLowerCase(Locale.ROOT);
+        SetImage asset = _setsByName.get(name);
+        return asset != null ? asset : getCatalogAsset(_setsByName, AssetCatalog.SET, name);
+    }
+
+    /**
+     * Returns the setting names.
+     */
+    public List<String> getSetNames()
+    {
+        // If catalog, get names from records
+        AssetCatalog catalog = _catalog;
+        if (catalog != null) {
+            int[] indexes = catalog.getIndexesForType(AssetCatalog.SET);
+            List<String> names = new ArrayList<>(indexes.length);
+            for (int index : indexes) names.add(catalog.getName(index));
+            return names;
         }
-        return null;
+
+        // Otherwise get names from sets
+        List<String> names = new ArrayList<>(_sets.size());
+        for (SetImage set : _sets) names.add(set.getName());
+        return names;
+    }
+
+    /**
+     * Returns the asset for given type and lowercase name from catalog (creating once and adding to given map).
+     */
+    private <T extends Asset> T getCatalogAsset(Map<String, T> aMap, int aType, String aNameLC)
+    {
+        AssetCatalog catalog = _catalog;
+        int index = catalog != null ? catalog.indexOf(aType, aNameLC) : -1;
+        if (index < 0)
+            return null;
+        return aMap.computeIfAbsent(aNameLC, k -> initAsset((T) catalog.createAsset(index, _root)));
     }
 
     /**
@@ -211,26 +441,128 @@ public class AssetIndex {
      */
     public String[] getDirPaths(String aPath)
     {
-        List<String> paths = new ArrayList();
         String path = aPath;
         if (!path.endsWith("/")) path += '/';
-        for (Asset as : _actors) {
-            String p = as.getPath();
-            if (p.startsWith(path)) {
-                int ind = p.indexOf('/', path.length());
-                if (ind > 0) p = p.substring(0, ind + 1);
-                if (!paths.contains(p)) paths.add(p);
-            }
+        PathNode node = getActorPaths().getNode(path);
+        if (node == null) return new String[0];
+        return node.getChildPaths(path);
+    }
+
+    /**
+     * Returns the root node of actor path trie (built from catalog on first call, if needed).
+     */
+    private PathNode getActorPaths()
+    {
+        PathNode actorPaths = _actorPaths;
+        if (actorPaths != null) return actorPaths;
+
+        synchronized (this) {
+            if (_actorPaths != null) return _actorPaths;
+            actorPaths = new PathNode();
+            for (int index : _catalog.getIndexesForType(AssetCatalog.ACTOR))
+                actorPaths.addPath('/' + _catalog.getFile(index));
+            return _actorPaths = actorPaths;
         }
-        return paths.toArray(new String[paths.size()]);
     }
 
     /**
-     * Returns the shared index.
+     * Returns the shared index (players can also use their own index via StageView.setAssetIndex()).
      */
     public static AssetIndex get()
     {
         return _shared;
     }
 
-}
\ No newline at end of file
+    /**
+     * A class to hold a node in a trie of asset paths, keyed by path component.
+     */
+    static class PathNode {
+
+        // The child entries in order added: directory names (with trailing '/') to nodes and file names to null
+        Map<String, PathNode> _entries;
+
+        /**
+         * Adds given path (e.g. "/people/lady/Lady.png") below this node.
+         */
+        void addPath(String aPath)
+        {
+            PathNode node = this;
+            int start = aPath.startsWith("/") ? 1 : 0;
+            for (int ind = aPath.indexOf('/', start); ind >= 0; start = ind + 1, ind = aPath.indexOf('/', start)) {
+                if (node._entries == null) node._entries = new LinkedHashMap<>();
+                node = node._entries.computeIfAbsent(aPath.substring(start, ind + 1), k -> new PathNode());
+            }
+            if (node._entries == null) node._entries = new LinkedHashMap<>();
+            node._entries.putIfAbsent(aPath.substring(start), null);
+        }
+
+        /**
+         * Returns the node for given directory path (ending in '/'), or null if not found.
+         */
+        PathNode getNode(String aPath)
+        {
+            PathNode node = this;
+            int start = aPath.startsWith("/") ? 1 : 0;
+            for (int ind = aPath.indexOf('/', start); ind >= 0 && node != null; start = ind + 1, ind = aPath.indexOf('/', start))
+                node = node._entries != null ? node._entries.get(aPath.substring(start, ind + 1)) : null;
+            return node;
+        }
+
+        /**
+         * Returns the paths of child directories (with trailing '/') and files for this node at given path, in the
+         * order they were first added.
+         */
+        String[] getChildPaths(String aPath)
+        {
+            List<String> paths = new ArrayList<>();
+            if (_entries != null) for (String name : _entries.keySet()) paths.add(aPath + name);
+            return paths.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * A concurrent set of names that holds up to given number of names, removing oldest added (first in, first out).
+     */
+    private static class BoundedNameSet {
+
+        // The names and the order they were added
+        final Set<String> _names = ConcurrentHashMap.newKeySet();
+        final Queue<String> _order = new ConcurrentLinkedQueue<>();
+
+        // The max number of names
+        final int _max;
+
+        /**
+         * Constructor.
+         */
+        BoundedNameSet(int aMax)  { _max = aMax; }
+
+        /**
+         * Returns whether set contains given name.
+         */
+        boolean contains(String aName)  { return _names.contains(aName); }
+
+        /**
+         * Adds given name, removing oldest names if over max.
+         */
+        void add(String aName)
+        {
+            if (!_names.add(aName)) return;
+            _order.add(aName);
+            while (_names.size() > _max) {
+                String oldest = _order.poll();
+                if (oldest == null) break;
+                _names.remove(oldest);
+            }
+        }
+
+        /**
+         * Removes all names.
+         */
+        void clear()
+        {
+            _names.clear();
+            _order.clear();
+        }
+    }
+}
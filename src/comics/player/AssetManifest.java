@@ -0,0 +1,157 @@
+package comics.player;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import snap.util.*;
+import snap.web.WebURL;
+
+/**
+ * A class to hold file modification times for an asset root, so freshness checks don't need a request per file.
+ * For a remote root, the times come from a single manifest.json (written by main()). For a local root, each
+ * directory is listed once.
+ */
+public class AssetManifest {
+
+    // The root path
+    String  _root;
+
+    // Whether root is a local directory
+    boolean  _local;
+
+    // The mod times by path relative to root
+    Map<String, Long>  _modTimes = new ConcurrentHashMap<>();
+
+    // The local directories already listed (relative to root)
+    Set<String>  _listedDirs = ConcurrentHashMap.newKeySet();
+
+    // The manifests by root
+    private static Map<String, AssetManifest>  _manifests = new ConcurrentHashMap<>();
+
+    // The manifest file name
+    public static final String MANIFEST_FILENAME = "manifest.json";
+
+    /**
+     * Constructor for given root.
+     */
+    public AssetManifest(String aRoot)
+    {
+        _root = aRoot;
+        _local = !SnapEnv.isTeaVM && aRoot.startsWith("/");
+        if (!_local)
+            readManifest();
+    }
+
+    /**
+     * Returns the root path.
+     */
+    public String getRoot()  { return _root; }
+
+    /**
+     * Returns the last modified time of file at given path relative to root (0 if not found).
+     */
+    public long getLastModTime(String aPath)
+    {
+        if (_local)
+            listDir(FilePathUtils.getParentPath('/' + aPath));
+        Long modTime = _modTimes.get(aPath);
+        return modTime != null ? modTime : 0;
+    }
+
+    /**
+     * Sets the last modified time of file at given path relative to root (e.g. after file is written).
+     */
+    public void setLastModTime(String aPath, long aTime)
+    {
+        if (_local)
+            listDir(FilePathUtils.getParentPath('/' + aPath));
+        _modTimes.put(aPath, aTime);
+    }
+
+    /**
+     * Lists local directory (relative to root) to get mod times of its files, if not yet listed.
+     */
+    private void listDir(String aDirPath)
+    {
+        if (!_listedDirs.add(aDirPath)) return;
+        File[] files = new File(_root, aDirPath).listFiles();
+        if (files == null) return;
+        String prefix = aDirPath.length() > 1 ? aDirPath.substring(1) + '/' : "";
+        for (File file : files)
+            if (file.isFile())
+                _modTimes.put(prefix + file.getName(), file.lastModified());
+    }
+
+    /**
+     * Reads the manifest file for remote root (if missing or malformed, complains and leaves manifest empty, so no
+     * files look new).
+     */
+    private void readManifest()
+    {
+        WebURL url = WebURL.getUrl(_root + MANIFEST_FILENAME);
+        if (url == null || !url.isFound()) {
+            System.err.println("AssetManifest: No manifest found at " + _root);
+            return;
+        }
+
+        // Read mod times (into temp map, so a bad entry doesn't leave manifest half read)
+        try {
+            JsonObject manifest = (JsonObject) JsonNode.readSource(url);
+            Map<String, Object> modTimes = ((JsonObject) manifest.getValue("ModTimes")).getAsMap();
+            Map<String, Long> times = new HashMap<>();
+            for (Map.Entry<String, Object> entry : modTimes.entrySet())
+                times.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+            _modTimes.putAll(times);
+        }
+
+        // Complain and leave manifest empty
+        catch (Exception e) {
+            System.err.println("AssetManifest: Error reading manifest at " + _root + " (ignoring): " + e);
+        }
+    }
+
+    /**
+     * Returns the shared manifest for given root (created outside map, so a remote read doesn't block other roots).
+     */
+    public static AssetManifest getManifestForRoot(String aRoot)
+    {
+        AssetManifest manifest = _manifests.get(aRoot);
+        if (manifest != null) return manifest;
+        manifest = new AssetManifest(aRoot);
+        AssetManifest other = _manifests.putIfAbsent(aRoot, manifest);
+        return other != null ? other : manifest;
+    }
+
+    /**
+     * Writes manifest.json with mod times of all image files in given ComicLib root directory.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.err.println("Usage: AssetManifest <ComicLib root directory>");
+            return;
+        }
+        Path root = Paths.get(args[0]);
+
+        // Get mod times of image files
+        StringBuilder sb = new StringBuilder("{\n  \"ModTimes\": {");
+        String sep = "\n";
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted()::iterator) {
+                String name = path.getFileName().toString().toLowerCase();
+                if (!Files.isRegularFile(path) || !(name.endsWith(".png") || name.endsWith(".gif"))) continue;
+                String relPath = root.relativize(path).toString().replace('\\', '/').replace("\"", "\\\"");
+                sb.append(sep).append("    \"").append(relPath).append("\": ").append(Files.getLastModifiedTime(path).toMillis());
+                sep = ",\n";
+            }
+        }
+        sb.append("\n  }\n}\n");
+
+        // Write file
+        Path file = root.resolve(MANIFEST_FILENAME);
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println("AssetManifest: Wrote " + file);
+    }
+}
@@ -0,0 +1,106 @@
+package comics.player;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A class to start loading assets for upcoming script lines (within a look-ahead time budget) while the current line
+ * plays, and to count the playback stalls it avoided and the ones that still happened.
+ */
+public class AssetPrefetcher {
+
+    // The PlayerView
+    PlayerView  _player;
+
+    // The look-ahead time budget (in millis)
+    int  _lookAheadTime = 10000;
+
+    // The lines that were not loaded when prefetched (only lines in current look-ahead window)
+    Set<ScriptLine>  _prefetchedLines = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // The last line started
+    ScriptLine  _lastLine;
+
+    // The number of stalls avoided and stalls that happened
+    int  _stallsAvoided, _stalls;
+
+    /**
+     * Constructor for given player.
+     */
+    public AssetPrefetcher(PlayerView aPlayer)
+    {
+        _player = aPlayer;
+    }
+
+    /**
+     * Returns the look-ahead time budget (in millis).
+     */
+    public int getLookAheadTime()  { return _lookAheadTime; }
+
+    /**
+     * Sets the look-ahead time budget (in millis).
+     */
+    public void setLookAheadTime(int aValue)  { _lookAheadTime = aValue; }
+
+    /**
+     * Returns the number of lines that were prefetched and loaded by the time they played.
+     */
+    public int getStallsAvoided()  { return _stallsAvoided; }
+
+    /**
+     * Returns the number of lines that were not loaded when they started to play.
+     */
+    public int getStalls()  { return _stalls; }
+
+    /**
+     * Starts loading assets for lines that start within look-ahead time after end of given line.
+     */
+    public void prefetchAfterLine(int aLine)
+    {
+        // Iterate over lines in look-ahead window and add lines that aren't loaded (keeping ones already added)
+        Script script = _player.getScript();
+        int lineCount = script.getLineCount();
+        int endTime = script.getLineEndTime(aLine) + _lookAheadTime;
+        Set<ScriptLine> prefetchedLines = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = aLine + 1; i < lineCount && script.getLineStartTime(i) < endTime; i++) {
+            ScriptLine line = script.getLine(i);
+            if (_prefetchedLines.contains(line) || !line.isLoaded()) // Triggers load
+                prefetchedLines.add(line);
+        }
+
+        // Set new window lines (drops lines that were skipped or replaced)
+        _prefetchedLines = prefetchedLines;
+    }
+
+    /**
+     * Called when script changes to clear prefetched lines (lines may have been replaced or removed).
+     */
+    public void scriptChanged()
+    {
+        _prefetchedLines.clear();
+        _lastLine = null;
+    }
+
+    /**
+     * Called when a line starts to play to record whether it stalled.
+     */
+    public void lineStarted(ScriptLine aLine)
+    {
+        // If same line restarted (after load), just return
+        if (aLine == null || aLine == _lastLine) return;
+        _lastLine = aLine;
+
+        // Record stall or stall avoided
+        boolean prefetched = _prefetchedLines.remove(aLine);
+        if (!aLine.isLoaded()) _stalls++;
+        else if (prefetched) _stallsAvoided++;
+    }
+
+    /**
+     * Standard toString implementation.
+     */
+    public String toString()
+    {
+        return "AssetPrefetcher { StallsAvoided:" + _stallsAvoided + ", Stalls:" + _stalls + " }";
+    }
+}
@@ -1,7 +1,6 @@
 package comics.player;
 import snap.geom.Insets;
 import snap.gfx.*;
-import snap.util.ArrayUtils;
 import snap.util.Convert;
 import snap.view.*;
 
@@ -88,13 +87,15 @@ public class CameraView extends ScaleBox implements Star {
 
     private static String _actions[] = {"zooms", "blurs"};
 
+    // The action words (with short forms) for matching line tokens
+    private static String _actionWords[] = {"zooms", "zoom", "blurs", "blur"};
+
     /**
      * Returns an Action for this star and given ScriptLine.
      */
     public Action getAction(ScriptLine aScriptLine)
     {
-        String words[] = aScriptLine.getWords();
-        String cmd = words.length > 1 ? words[1] : null;
+        String cmd = aScriptLine.getLexer().getTokenMatch(ScriptLexer.ACTION, _actionWords);
         if (cmd == null)
             return null;
 
@@ -236,6 +237,9 @@ public class CameraView extends ScaleBox implements Star {
      */
     public static class ZoomAction extends Action {
 
+        // Whether zoom is out
+        boolean  _out;
+
         /**
          * Creates the action.
          */
@@ -253,6 +257,14 @@ public class CameraView extends ScaleBox implements Star {
             return new String[]{"in", "out"};
         }
 
+        /**
+         * Override to parse predicate.
+         */
+        public void load()
+        {
+            _out = getLine().hasWord("out");
+        }
+
         /**
          * Runs the action.
          */
@@ -263,8 +275,7 @@ public class CameraView extends ScaleBox implements Star {
             ViewAnim anim = camera.getAnim(2000);
 
             // Handle Zooms Out
-            String words[] = getLine().getWords();
-            if (ArrayUtils.contains(words, "out")) {
+            if (_out) {
                 anim.setValue("Zoom", 1);
             }
 
@@ -280,6 +291,9 @@ public class CameraView extends ScaleBox implements Star {
      */
     public static class BlurAction extends Action {
 
+        // Whether blur is off
+        boolean  _off;
+
         /**
          * Creates the action.
          */
@@ -297,6 +311,15 @@ public class CameraView extends ScaleBox implements Star {
             return new String[]{"off"};
         }
 
+        /**
+         * Override to parse predicate.
+         */
+        public void load()
+        {
+            ScriptLine line = getLine();
+            _off = line.hasWord("out") || line.hasWord("off");
+        }
+
         /**
          * Runs the action.
          */
@@ -307,8 +330,7 @@ public class CameraView extends ScaleBox implements Star {
             ViewAnim anim = camera.getAnim(1000);
 
             // Handle Zooms Out
-            String words[] = getLine().getWords();
-            if (ArrayUtils.contains(words, "out") || ArrayUtils.contains(words, "off")) {
+            if (_off) {
                 anim.setValue("Blur", 0d);
             }
 
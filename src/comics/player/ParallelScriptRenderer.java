@@ -0,0 +1,225 @@
+package comics.player;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import snap.gfx.Image;
+
+/**
+ * A class to render a script offline by splitting it into line-aligned segments that render concurrently, each with
+ * its own ScriptRenderer (and PlayerView/StageView), then passing frames to the sink in order.
+ *
+ * Each worker thread gets its own AssetIndex and AssetImageCache (via StageView.setAssetIndex), so workers don't share
+ * assets, images or views. What workers still share is read-only or locked: the PuppetFile/ActionFile (loaded once),
+ * the PuppetImager pool and the WebCache/BakedSpriteCache disk caches.
+ *
+ * Frames stream to the sink through a small bounded queue per segment, and only as many segments as threads are in
+ * flight, so at most (thread count * queue size) frames are held in memory.
+ */
+public class ParallelScriptRenderer {
+
+    // The script text
+    String  _scriptText;
+
+    // The frames per second
+    int  _frameRate = 30;
+
+    // The frame size
+    double  _frameWidth = 720, _frameHeight = 405;
+
+    // The number of threads
+    int  _threadCount = Runtime.getRuntime().availableProcessors();
+
+    // The number of segments per thread (more segments balance uneven lines better)
+    int  _segmentsPerThread = 2;
+
+    // The max number of rendered frames queued per segment before its worker waits for the sink
+    int  _queueSize = 8;
+
+    // The asset index of each worker thread
+    ThreadLocal<AssetIndex>  _workerIndex = ThreadLocal.withInitial(this::createAssetIndex);
+
+    // The marker queued when a segment is done
+    private static final Object SEGMENT_DONE = new Object();
+
+    /**
+     * Constructor for given script text.
+     */
+    public ParallelScriptRenderer(String aScriptText)
+    {
+        _scriptText = aScriptText;
+    }
+
+    /**
+     * Returns the frames per second.
+     */
+    public int getFrameRate()  { return _frameRate; }
+
+    /**
+     * Sets the frames per second.
+     */
+    public void setFrameRate(int aValue)  { _frameRate = aValue; }
+
+    /**
+     * Sets the frame size.
+     */
+    public void setFrameSize(double aWidth, double aHeight)
+    {
+        _frameWidth = aWidth;
+        _frameHeight = aHeight;
+    }
+
+    /**
+     * Returns the number of threads.
+     */
+    public int getThreadCount()  { return _threadCount; }
+
+    /**
+     * Sets the number of threads.
+     */
+    public void setThreadCount(int aValue)  { _threadCount = Math.max(aValue, 1); }
+
+    /**
+     * Returns the max number of rendered frames queued per segment.
+     */
+    public int getQueueSize()  { return _queueSize; }
+
+    /**
+     * Sets the max number of rendered frames queued per segment.
+     */
+    public void setQueueSize(int aValue)  { _queueSize = Math.max(aValue, 1); }
+
+    /**
+     * Renders all frames of script to given sink.
+     */
+    public void render(ScriptRenderer.FrameSink aSink)
+    {
+        // Get segment frame starts
+        ScriptRenderer planner = new ScriptRenderer(_scriptText, createAssetIndex());
+        planner.setFrameRate(_frameRate);
+        int[] segmentStarts = getSegmentStarts(planner);
+        int segmentCount = segmentStarts.length - 1;
+
+        // Create frame queue for each segment
+        List<BlockingQueue<Object>> queues = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++)
+            queues.add(new ArrayBlockingQueue<>(_queueSize));
+
+        // Create executor (segments are submitted in order, no more than thread count ahead of the sink)
+        int threadCount = Math.min(_threadCount, segmentCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        int submitCount = 0;
+
+        // Iterate over segments and pass frames to sink in order as they are rendered
+        try {
+            for (int i = 0; i < segmentCount; i++) {
+
+                // Submit segments up to in flight limit
+                for (; submitCount < segmentCount && submitCount < i + threadCount; submitCount++) {
+                    int start = segmentStarts[submitCount], end = segmentStarts[submitCount + 1];
+                    BlockingQueue<Object> queue = queues.get(submitCount);
+                    executor.execute(() -> renderSegment(start, end, queue));
+                }
+
+                // Take frames from segment queue until done
+                BlockingQueue<Object> queue = queues.get(i);
+                for (int frame = segmentStarts[i]; ; frame++) {
+                    Object item = queue.take();
+                    if (item == SEGMENT_DONE) break;
+                    if (item instanceof Throwable)
+                        throw new RuntimeException((Throwable) item);
+                    aSink.addFrame((Image) item, frame, planner.getFrameTime(frame));
+                }
+                queues.set(i, null);
+            }
+        }
+
+        // Handle interrupt
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+
+        // Stop any remaining workers
+        finally { executor.shutdownNow(); }
+
+        // Notify sink
+        aSink.finish();
+    }
+
+    /**
+     * Renders frames in given range with a new renderer (using worker thread asset index) to given queue.
+     */
+    protected void renderSegment(int aStartFrame, int anEndFrame, BlockingQueue<Object> aQueue)
+    {
+        try {
+            ScriptRenderer renderer = createRenderer();
+            renderer.render(aStartFrame, anEndFrame, (img, frame, time) -> putInQueue(aQueue, img));
+            aQueue.put(SEGMENT_DONE);
+        }
+
+        // If interrupted, just return (render was cancelled)
+        catch (InterruptedException | CancellationException e) { }
+
+        // Otherwise pass failure to sink thread
+        catch (Throwable e) {
+            try { aQueue.put(e); }
+            catch (InterruptedException e2) { }
+        }
+    }
+
+    /**
+     * Puts given frame in queue, waiting for the sink if queue is full.
+     */
+    private static void putInQueue(BlockingQueue<Object> aQueue, Image anImage)
+    {
+        try { aQueue.put(anImage); }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Returns segment start frames (plus end frame), with each segment starting at the first frame of a line.
+     */
+    protected int[] getSegmentStarts(ScriptRenderer aRenderer)
+    {
+        // Get script runtime, frame count and target segment count
+        Script script = aRenderer.getScript();
+        int runTime = script.getRunTime();
+        int frameCount = aRenderer.getFrameCount();
+        int targetCount = Math.max(_threadCount * _segmentsPerThread, 1);
+
+        // Add start frame for line at each evenly spaced time (skipping duplicates)
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 1; i < targetCount; i++) {
+            int line = script.getLineForTime((int) ((long) runTime * i / targetCount));
+            int lineStart = script.getLineStartTime(line);
+            int frame = (int) ((lineStart * (long) _frameRate + 999) / 1000);
+            if (frame > starts.get(starts.size() - 1) && frame < frameCount)
+                starts.add(frame);
+        }
+        starts.add(frameCount);
+
+        // Return as array
+        return starts.stream().mapToInt(i -> i).toArray();
+    }
+
+    /**
+     * Creates a renderer for script with the asset index of current worker thread.
+     */
+    protected ScriptRenderer createRenderer()
+    {
+        ScriptRenderer renderer = new ScriptRenderer(_scriptText, _workerIndex.get());
+        renderer.setFrameRate(_frameRate);
+        renderer.setFrameSize(_frameWidth, _frameHeight);
+        return renderer;
+    }
+
+    /**
+     * Creates an asset index with its own image cache (budget of shared cache split between threads).
+     */
+    protected AssetIndex createAssetIndex()
+    {
+        long maxBytes = AssetImageCache.get().getMaxBytes() / Math.max(_threadCount, 1);
+        return new AssetIndex(AssetIndex.getDefaultRoot(), new AssetImageCache(maxBytes));
+    }
+}
@@ -1,10 +1,12 @@
 package comics.player;
 
+import java.util.*;
 import snap.geom.Pos;
 import snap.gfx.*;
 import snap.props.PropChangeListener;
 import snap.view.*;
 import comics.player.PlayBar.*;
+import puppets.PuppetImager;
 
 /**
  * A View to play an animation. Encapsulates a CameraView, StageView and Script.
@@ -38,9 +40,21 @@ public class PlayerView extends ScaleBox {
     // The run time for last mouse
     int _lastMouseRunTime;
 
+    // The stage checkpoints, keyed by the line they follow
+    TreeMap<Integer, StageCheckpoint> _checkpoints = new TreeMap<>();
+
+    // The prefetcher to load assets for upcoming lines
+    AssetPrefetcher _prefetcher = new AssetPrefetcher(this);
+
     // The runnable to call playLineDone()
     Runnable _playLineDoneRun = () -> playLineDone();
 
+    // Whether player is driven offline on another thread (asset index is waited for, not applied later on UI thread)
+    volatile boolean _headless;
+
+    // The number of lines between stage checkpoints
+    static final int CHECKPOINT_LINES = 16;
+
     // Constants for Property Changes
     public static final String RunLine_Prop = "RunLine";
     public static final String Playing_Prop = "Playing";
@@ -71,10 +85,44 @@ public class PlayerView extends ScaleBox {
         // Create Script (empty)
         _script = new Script(this);
 
+        // If asset index still loading, resolve script actors when it arrives (and again whenever stage index changes)
+        assetIndexChanged();
+        _stage.addPropChangeListener(pc -> assetIndexChanged(), StageView.AssetIndex_Prop);
+
         // Show Controls
         setShowControls(true);
     }
 
+    /**
+     * Called when stage asset index is set to resolve script actors when it loads (if still loading).
+     */
+    protected void assetIndexChanged()
+    {
+        AssetIndex assetIndex = _stage.getAssetIndex();
+        if (!assetIndex.isLoaded())
+            assetIndex.addLoadListener(() -> ViewUtils.runLater(() -> assetIndexLoaded(assetIndex)));
+    }
+
+    /**
+     * Called on UI thread when given asset index loads to resolve script actors (if index is still in use).
+     */
+    protected void assetIndexLoaded(AssetIndex anIndex)
+    {
+        if (_headless || anIndex != _stage.getAssetIndex()) return;
+        _script.assetIndexLoaded();
+    }
+
+    /**
+     * Returns whether player is driven offline on another thread (e.g. by ScriptRenderer).
+     */
+    public boolean isHeadless()  { return _headless; }
+
+    /**
+     * Sets whether player is driven offline on another thread. A headless player doesn't resolve script actors from
+     * UI thread when the asset index loads: its driver should wait for the index before running lines.
+     */
+    public void setHeadless(boolean aValue)  { _headless = aValue; }
+
     /**
      * Returns the StageView.
      */
@@ -99,6 +147,14 @@ public class PlayerView extends ScaleBox {
         return _script;
     }
 
+    /**
+     * Returns the asset prefetcher.
+     */
+    public AssetPrefetcher getPrefetcher()
+    {
+        return _prefetcher;
+    }
+
     /**
      * Returns the Script text.
      */
@@ -120,14 +176,29 @@ public class PlayerView extends ScaleBox {
      */
     public void scriptChanged()
     {
-        // Reset RunLine
+        scriptChanged(0);
+    }
+
+    /**
+     * Called when the script changes, starting at given line index.
+     */
+    public void scriptChanged(int aFirstLine)
+    {
+        // Clear checkpoints from first changed line
+        _checkpoints.tailMap(aFirstLine, true).clear();
+        checkpointsChanged();
+        _prefetcher.scriptChanged();
+
+        // If change is at or before RunLine, reset RunLine (lines after RunLine don't affect stage)
         int runLine = getRunLine();
-        if (runLine >= getScript().getLineCount()) runLine = getScript().getLineCount() - 1;
-        _runLine = -1;
-        setRunLine(runLine);
+        if (aFirstLine <= runLine) {
+            if (runLine >= getScript().getLineCount()) runLine = getScript().getLineCount() - 1;
+            _runLine = -1;
+            setRunLine(runLine);
+        }
 
         // Notify EditorPane
-        firePropChange(Script_Prop, null, _script);
+        firePropChange(Script_Prop, null, _script, aFirstLine);
     }
 
     /**
@@ -246,6 +317,14 @@ public class PlayerView extends ScaleBox {
         else {
             _camera.setAnimTimeDeep(getLineRunTime(runLine));
             clearAnims();
+            addCheckpointIfNeeded(runLine);
+        }
+
+        // If there is a checkpoint between current line and new line, restore it
+        Map.Entry<Integer, StageCheckpoint> checkpointEntry = _checkpoints.lowerEntry(anIndex);
+        if (checkpointEntry != null && checkpointEntry.getKey() > runLine) {
+            checkpointEntry.getValue().restore(this);
+            runLine = checkpointEntry.getKey();
         }
 
         // Configure and run lines up to index
@@ -254,6 +333,7 @@ public class PlayerView extends ScaleBox {
             if (i == anIndex) break;
             _camera.setAnimTimeDeep(getLineRunTime(i));
             clearAnims();
+            addCheckpointIfNeeded(i);
         }
 
         // Configure PlayerView.Anim to call playerDidAnim() on each frame
@@ -263,6 +343,32 @@ public class PlayerView extends ScaleBox {
         firePropChange(RunLine_Prop, runLine, _runLine = anIndex);
     }
 
+    /**
+     * Adds a stage checkpoint for given finished line, if line is at least checkpoint interval past last checkpoint
+     * (so a line that can't be captured is retried on the next one).
+     */
+    protected void addCheckpointIfNeeded(int aLine)
+    {
+        Integer lastLine = _checkpoints.floorKey(aLine);
+        int lineCount = aLine + 1 - (lastLine != null ? lastLine + 1 : 0);
+        if (lineCount < CHECKPOINT_LINES) return;
+        if (StageCheckpoint.canCapture(this)) {
+            _checkpoints.put(aLine, new StageCheckpoint(this, aLine));
+            checkpointsChanged();
+        }
+    }
+
+    /**
+     * Called when checkpoints change to mark their assets in use (so image cache keeps them loaded for seeking).
+     */
+    protected void checkpointsChanged()
+    {
+        Set<Asset> assets = new HashSet<>();
+        for (StageCheckpoint checkpoint : _checkpoints.values())
+            checkpoint.addAssets(assets);
+        _stage.setCheckpointAssets(assets);
+    }
+
     /**
      * Runs the script line at current index.
      */
@@ -290,9 +396,14 @@ public class PlayerView extends ScaleBox {
         // Stop animation
         _camera.stopAnimDeep();
 
-        // If current line not loaded, come back
+        // Record line start and prefetch assets for upcoming lines
         ScriptLine line = getScript().getLine(getRunLine());
+        _prefetcher.lineStarted(line);
+        _prefetcher.prefetchAfterLine(getRunLine());
+
+        // If current line not loaded, load it first and come back
         if (line != null && !line.isLoaded()) {
+            line.setLoadPriority(PuppetImager.PRIORITY_PLAYING);
             line.addLoadListener(() -> ViewUtils.runLater(() -> playLine(getRunLine())));
             return;
         }
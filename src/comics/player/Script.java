@@ -17,8 +17,11 @@ public class Script extends PropObject {
     // The Script lines
     List<ScriptLine> _lines;
 
-    // The runtimes
-    int _runTime;
+    // The compiled program
+    ScriptProgram _program;
+
+    // The index of line runtimes
+    TimeIndex _timeIndex;
 
     // Undo/Redo texts
     Undoer _undoer = new Undoer();
@@ -56,10 +59,58 @@ public class Script extends PropObject {
     public void setText(String aStr)
     {
         if (Objects.equals(aStr, _text)) return;
-        _lines = null;
-        _runTime = -1;
+
+        // If lines already created, update them (reusing unchanged lines), otherwise just reset
+        int firstChanged = _lines != null ? updateLines(aStr) : 0;
+
+        // Fire prop change and notify player
         firePropChange(Text_Prop, _text, _text = aStr);
-        _player.scriptChanged();
+        _player.scriptChanged(firstChanged);
+    }
+
+    /**
+     * Updates lines for new text, reusing existing lines (and their resolved stars and actions) where text matches.
+     * Returns the index of the first changed line.
+     */
+    protected int updateLines(String aStr)
+    {
+        // Get old lines and new line strings
+        List<ScriptLine> oldLines = _lines;
+        String[] textLines = aStr.split("\\n");
+        int oldCount = oldLines.size(), newCount = textLines.length;
+
+        // Get count of matching lines at start and end
+        int head = 0;
+        while (head < oldCount && head < newCount && oldLines.get(head).getText().equals(textLines[head]))
+            head++;
+        int tail = 0;
+        while (tail < oldCount - head && tail < newCount - head &&
+                oldLines.get(oldCount - tail - 1).getText().equals(textLines[newCount - tail - 1]))
+            tail++;
+
+        // Map remaining old lines by text, so moved lines can be reused
+        Map<String, Deque<ScriptLine>> oldLinesMap = new HashMap<>();
+        for (int i = head; i < oldCount - tail; i++) {
+            ScriptLine line = oldLines.get(i);
+            oldLinesMap.computeIfAbsent(line.getText(), k -> new ArrayDeque<>()).add(line);
+        }
+
+        // Create new lines list: matching head, reused or new middle, matching tail
+        List<ScriptLine> newLines = new ArrayList<>(newCount);
+        newLines.addAll(oldLines.subList(0, head));
+        for (int i = head; i < newCount - tail; i++) {
+            Deque<ScriptLine> matches = oldLinesMap.get(textLines[i]);
+            ScriptLine line = matches != null && !matches.isEmpty() ? matches.poll() : new ScriptLine(this, textLines[i]);
+            newLines.add(line);
+        }
+        newLines.addAll(oldLines.subList(oldCount - tail, oldCount));
+
+        // Set lines and update program for changed range
+        _lines = newLines;
+        linesChanged(head, oldCount - tail, newCount - tail);
+
+        // Return first changed line
+        return head;
     }
 
     /**
@@ -94,9 +145,9 @@ public class Script extends PropObject {
     public void addLine(ScriptLine aLine, int anIndex)
     {
         getLines().add(anIndex, aLine);
+        linesChanged(anIndex, anIndex, anIndex + 1);
         firePropChange(Line_Prop, null, aLine, anIndex);
-        _runTime = -1;
-        _player.scriptChanged();
+        _player.scriptChanged(anIndex);
     }
 
     /**
@@ -105,9 +156,9 @@ public class Script extends PropObject {
     public void removeLine(int anIndex)
     {
         ScriptLine scriptLine = getLines().remove(anIndex);
+        linesChanged(anIndex, anIndex + 1, anIndex);
         firePropChange(Line_Prop, scriptLine, null, anIndex);
-        _runTime = -1;
-        _player.scriptChanged();
+        _player.scriptChanged(anIndex);
     }
 
     /**
@@ -128,15 +179,56 @@ public class Script extends PropObject {
         sline.setText(aStr);
     }
 
+    /**
+     * Returns the compiled program.
+     */
+    public ScriptProgram getProgram()
+    {
+        if (_program != null) return _program;
+        return _program = ScriptProgram.compile(getLines());
+    }
+
+    /**
+     * Returns the index of line runtimes.
+     */
+    protected TimeIndex getTimeIndex()
+    {
+        if (_timeIndex != null) return _timeIndex;
+        _timeIndex = new TimeIndex();
+        _timeIndex.setTimes(getProgram().getRunTimes());
+        return _timeIndex;
+    }
+
+    /**
+     * Called when lines in given old range are replaced by lines up to given new end, to recompile changed range.
+     */
+    protected void linesChanged(int aStart, int anOldEnd, int aNewEnd)
+    {
+        // If program not compiled yet, just return
+        if (_program == null) return;
+
+        // Recompile changed lines
+        _program = _program.replaceSteps(aStart, anOldEnd, getLines().subList(aStart, aNewEnd));
+
+        // Update time index (point updates if line count unchanged, otherwise replace range)
+        if (_timeIndex == null) return;
+        if (anOldEnd == aNewEnd) {
+            for (int i = aStart; i < aNewEnd; i++)
+                _timeIndex.setTime(i, _program.getStep(i).getRunTime());
+        }
+        else {
+            int[] times = new int[aNewEnd - aStart];
+            for (int i = 0; i < times.length; i++) times[i] = _program.getStep(aStart + i).getRunTime();
+            _timeIndex.replaceTimes(aStart, anOldEnd, times);
+        }
+    }
+
     /**
      * Returns the run time.
      */
     public int getRunTime()
     {
-        if (_runTime >= 0) return _runTime;
-        _runTime = 0;
-        for (ScriptLine line : getLines()) _runTime += line.getRunTime();
-        return _runTime;
+        return getTimeIndex().getTotalTime();
     }
 
     /**
@@ -144,7 +236,7 @@ public class Script extends PropObject {
      */
     public int getLineRunTime(int anIndex)
     {
-        return anIndex < getLineCount() ? getLine(anIndex).getRunTime() : 0;
+        return getTimeIndex().getTime(anIndex);
     }
 
     /**
@@ -152,9 +244,7 @@ public class Script extends PropObject {
      */
     public int getLineStartTime(int aLine)
     {
-        int rt = 0;
-        for (int i = 0; i < aLine; i++) rt += getLineRunTime(i);
-        return rt;
+        return getTimeIndex().getStartTime(aLine);
     }
 
     /**
@@ -162,9 +252,7 @@ public class Script extends PropObject {
      */
     public int getLineEndTime(int aLine)
     {
-        int rt = 0;
-        for (int i = 0; i <= aLine; i++) rt += getLineRunTime(i);
-        return rt;
+        return getTimeIndex().getEndTime(aLine);
     }
 
     /**
@@ -172,12 +260,7 @@ public class Script extends PropObject {
      */
     public int getLineForTime(int aTime)
     {
-        int time = aTime, lineCount = getLineCount();
-        for (int i = 0; i < lineCount; i++) {
-            time -= getLineRunTime(i);
-            if (time < 0) return i;
-        }
-        return lineCount - 1;
+        return getTimeIndex().getIndexForTime(aTime);
     }
 
     /**
@@ -192,8 +275,8 @@ public class Script extends PropObject {
         }
 
         // Run requested line
-        ScriptLine line = getLine(anIndex);
-        line.run();
+        ScriptProgram.Step step = getProgram().getStep(anIndex);
+        step.run();
     }
 
     /**
@@ -227,8 +310,34 @@ public class Script extends PropObject {
     {
         _undoer.addPropChange(propChange);
         _undoer.saveChanges();
-        _runTime = -1;
-        _player.scriptChanged();
+
+        // Recompile changed line
+        int index = propChange.getSource() instanceof ScriptLine line ? getLines().indexOf(line) : -1;
+        if (index >= 0)
+            linesChanged(index, index + 1, index + 1);
+        _player.scriptChanged(Math.max(index, 0));
+    }
+
+    /**
+     * Called when asset index loads to resolve stars of lines that were waiting for it and recompile from there.
+     */
+    public void assetIndexLoaded()
+    {
+        // Clear stars of unresolved lines
+        List<ScriptLine> lines = getLines();
+        int firstChanged = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            ScriptLine line = lines.get(i);
+            if (line._star == null && line.getStarName() != null) {
+                line.clearStar();
+                if (firstChanged < 0) firstChanged = i;
+            }
+        }
+
+        // If any lines cleared, recompile from first and notify player
+        if (firstChanged < 0) return;
+        linesChanged(firstChanged, lines.size(), lines.size());
+        _player.scriptChanged(firstChanged);
     }
 
     /**
@@ -0,0 +1,730 @@
+package comics.player;
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import snap.gfx.Image;
+
+/**
+ * A class to export a script to animated GIF, animated PNG (APNG) or a numbered PNG sequence. Frames are encoded as
+ * they are rendered and written incrementally, so only the previous frame is held in memory.
+ */
+public class ScriptExporter {
+
+    /**
+     * Exports given script text to given file at given frame rate. File extension ".gif" writes GIF, ".png" writes
+     * APNG, and a directory writes a PNG sequence.
+     */
+    public static void export(String aScriptText, File aFile, int aFrameRate)
+    {
+        ScriptRenderer renderer = new ScriptRenderer(aScriptText);
+        renderer.setFrameRate(aFrameRate);
+        ScriptRenderer.FrameSink sink = getWriter(aFile, aFrameRate);
+        renderer.render(sink);
+    }
+
+    /**
+     * Returns a frame writer for given file.
+     */
+    public static ScriptRenderer.FrameSink getWriter(File aFile, int aFrameRate)
+    {
+        String name = aFile.getName().toLowerCase();
+        if (name.endsWith(".gif")) return new GifWriter(aFile, aFrameRate);
+        if (name.endsWith(".png")) return new ApngWriter(aFile, aFrameRate);
+        return new PngSequenceWriter(aFile, "frame");
+    }
+
+    /**
+     * A FrameSink that writes each frame to a numbered PNG file in a directory.
+     */
+    public static class PngSequenceWriter implements ScriptRenderer.FrameSink {
+
+        // The directory
+        File  _dir;
+
+        // The file name prefix
+        String  _prefix;
+
+        /**
+         * Constructor for given directory and file name prefix.
+         */
+        public PngSequenceWriter(File aDir, String aPrefix)
+        {
+            _dir = aDir;
+            _prefix = aPrefix;
+            _dir.mkdirs();
+        }
+
+        /**
+         * Writes frame to file.
+         */
+        public void addFrame(Image anImage, int aFrame, int aTime)
+        {
+            File file = new File(_dir, String.format("%s%05d.png", _prefix, aFrame));
+            try (OutputStream out = new FileOutputStream(file)) { out.write(anImage.getBytesPNG()); }
+            catch (Exception e) { throw new RuntimeException(e); }
+        }
+    }
+
+    /**
+     * A FrameSink base class for animated formats. Each frame is compared with the previous frame: identical frames
+     * just extend the previous frame delay, otherwise only the changed rect is encoded (with unchanged pixels
+     * transparent). The encoded frame is held until the next frame arrives, since the delay precedes it in the file.
+     */
+    public static abstract class AnimWriter implements ScriptRenderer.FrameSink {
+
+        // The output stream
+        OutputStream  _out;
+
+        // The frame rate
+        int  _frameRate;
+
+        // The frame size
+        int  _width, _height;
+
+        // The pixels of last frame
+        int[]  _lastPixels;
+
+        // The pending frame rect (x, y, w, h), encoded data, start time and frame count
+        int[]  _pendingRect;
+        byte[]  _pendingData;
+        int  _pendingTime, _pendingCount;
+
+        /**
+         * Constructor for given file and frame rate.
+         */
+        public AnimWriter(File aFile, int aFrameRate)
+        {
+            _frameRate = aFrameRate;
+            try { _out = new BufferedOutputStream(new FileOutputStream(aFile), 1 << 16); }
+            catch (Exception e) { throw new RuntimeException(e); }
+        }
+
+        /**
+         * Adds a frame.
+         */
+        public void addFrame(Image anImage, int aFrame, int aTime)
+        {
+            // Get pixels
+            int[] pixels = anImage.getArgbPixels();
+
+            // If first frame, write header
+            int[] rect;
+            if (_lastPixels == null) {
+                _width = anImage.getPixWidth();
+                _height = anImage.getPixHeight();
+                writeHeader();
+                rect = new int[]{0, 0, _width, _height};
+            }
+
+            // Otherwise, get changed rect (if none, just extend pending frame)
+            else {
+                rect = getChangedRect(_lastPixels, pixels);
+                if (rect == null) {
+                    _pendingCount++;
+                    return;
+                }
+            }
+
+            // Write pending frame, then encode this frame as pending
+            writePending(aTime);
+            _pendingRect = rect;
+            _pendingData = encodeFrame(pixels, _lastPixels, rect);
+            _pendingTime = aTime;
+            _pendingCount = 1;
+            _lastPixels = pixels;
+        }
+
+        /**
+         * Writes pending frame and trailer and closes file.
+         */
+        public void finish()
+        {
+            writePending(_pendingTime + Math.round(_pendingCount * 1000f / _frameRate));
+            try {
+                writeTrailer();
+                _out.close();
+            }
+            catch (Exception e) { throw new RuntimeException(e); }
+        }
+
+        /**
+         * Writes the pending frame, which ends at given time.
+         */
+        private void writePending(int anEndTime)
+        {
+            if (_pendingData == null) return;
+            try { writeFrame(_pendingRect, _pendingData, _pendingTime, anEndTime); }
+            catch (Exception e) { throw new RuntimeException(e); }
+            _pendingData = null;
+        }
+
+        /**
+         * Returns the rect (x, y, w, h) of pixels that differ (or null if identical).
+         */
+        int[] getChangedRect(int[] oldPixels, int[] newPixels)
+        {
+            int minX = _width, minY = _height, maxX = -1, maxY = -1;
+            for (int y = 0, i = 0; y < _height; y++) {
+                for (int x = 0; x < _width; x++, i++) {
+                    if (oldPixels[i] != newPixels[i]) {
+                        if (x < minX) minX = x;
+                        if (x > maxX) maxX = x;
+                        if (y < minY) minY = y;
+                        maxY = y;
+                    }
+                }
+            }
+            return maxX < 0 ? null : new int[]{minX, minY, maxX - minX + 1, maxY - minY + 1};
+        }
+
+        /**
+         * Writes the file header.
+         */
+        protected abstract void writeHeader();
+
+        /**
+         * Encodes the pixels in given rect (pixels equal to old pixels can be encoded as transparent).
+         */
+        protected abstract byte[] encodeFrame(int[] thePixels, int[] oldPixels, int[] aRect);
+
+        /**
+         * Writes an encoded frame shown from given start time to end time.
+         */
+        protected abstract void writeFrame(int[] aRect, byte[] theData, int aStartTime, int anEndTime) throws IOException;
+
+        /**
+         * Writes the file trailer.
+         */
+        protected abstract void writeTrailer() throws IOException;
+
+        /**
+         * Writes a 16 bit little-endian value.
+         */
+        void writeShortLE(int aValue) throws IOException
+        {
+            _out.write(aValue & 0xff);
+            _out.write((aValue >> 8) & 0xff);
+        }
+    }
+
+    /**
+     * An AnimWriter for animated GIF. The global palette is quantized from the first frame and reused (with a
+     * color-to-index cache). If a later frame maps poorly to it (e.g. an actor enters with new colors), that frame gets
+     * a local palette quantized from its changed pixels.
+     */
+    public static class GifWriter extends AnimWriter {
+
+        // The global palette (from first frame)
+        Palette  _palette;
+
+        // The number of frames written with local palette
+        int  _localPaletteCount;
+
+        // The transparent index
+        static final int TRANSPARENT = 255;
+
+        // The mean squared color distance above which a frame gets a local palette
+        static final int MAX_MEAN_ERROR = 300;
+
+        /**
+         * Constructor for given file and frame rate.
+         */
+        public GifWriter(File aFile, int aFrameRate)
+        {
+            super(aFile, aFrameRate);
+        }
+
+        /**
+         * Returns the number of frames written with local palette.
+         */
+        public int getLocalPaletteCount()  { return _localPaletteCount; }
+
+        /**
+         * Writes GIF header (without global palette, which is written with first frame).
+         */
+        protected void writeHeader()  { }
+
+        /**
+         * Encodes frame as GIF image descriptor (with local palette if needed) and LZW data.
+         */
+        protected byte[] encodeFrame(int[] thePixels, int[] oldPixels, int[] aRect)
+        {
+            // If first frame, create palette from it and write header with global palette
+            if (_palette == null) {
+                _palette = new Palette(thePixels, null, aRect, _width);
+                try { writeGifHeader(); }
+                catch (Exception e) { throw new RuntimeException(e); }
+            }
+
+            // Get palette indices for rect with global palette - if mean error is too high, use local palette
+            int rw = aRect[2], rh = aRect[3];
+            byte[] indices = new byte[rw * rh];
+            Palette localPalette = null;
+            if (getIndices(_palette, thePixels, oldPixels, aRect, indices) > MAX_MEAN_ERROR) {
+                localPalette = new Palette(thePixels, oldPixels, aRect, _width);
+                getIndices(localPalette, thePixels, oldPixels, aRect, indices);
+                _localPaletteCount++;
+            }
+
+            // Write image descriptor (and local palette) and LZW data
+            ByteArrayOutputStream out = new ByteArrayOutputStream(rw * rh / 2 + 64);
+            out.write(0x2C);
+            writeShortLE(out, aRect[0]);
+            writeShortLE(out, aRect[1]);
+            writeShortLE(out, rw);
+            writeShortLE(out, rh);
+            out.write(localPalette != null ? 0x87 : 0);
+            if (localPalette != null)
+                localPalette.write(out);
+            new LzwEncoder(out).encode(indices);
+            return out.toByteArray();
+        }
+
+        /**
+         * Sets palette indices for pixels in rect (with unchanged pixels transparent) and returns mean color error.
+         */
+        private int getIndices(Palette aPalette, int[] thePixels, int[] oldPixels, int[] aRect, byte[] theIndices)
+        {
+            int rx = aRect[0], ry = aRect[1], rw = aRect[2], rh = aRect[3];
+            long error = 0;
+            int count = 0;
+            for (int y = 0, j = 0; y < rh; y++) {
+                for (int x = 0, i = (ry + y) * _width + rx; x < rw; x++, i++, j++) {
+                    int argb = thePixels[i];
+                    if (oldPixels != null && oldPixels[i] == argb)
+                        theIndices[j] = (byte) TRANSPARENT;
+                    else {
+                        theIndices[j] = (byte) aPalette.getColorIndex(argb);
+                        error += aPalette.getColorError(argb);
+                        count++;
+                    }
+                }
+            }
+            return count > 0 ? (int) (error / count) : 0;
+        }
+
+        /**
+         * Writes graphic control extension (for delay and transparency) and frame data.
+         */
+        protected void writeFrame(int[] aRect, byte[] theData, int aStartTime, int anEndTime) throws IOException
+        {
+            int delay = Math.min(Math.round(anEndTime / 10f) - Math.round(aStartTime / 10f), 0xFFFF);
+            _out.write(new byte[]{0x21, (byte) 0xF9, 4, 0x05});
+            writeShortLE(delay);
+            _out.write(TRANSPARENT);
+            _out.write(0);
+            _out.write(theData);
+        }
+
+        /**
+         * Writes GIF trailer.
+         */
+        protected void writeTrailer() throws IOException
+        {
+            if (_palette == null) return;
+            _out.write(0x3B);
+        }
+
+        /**
+         * Writes GIF header, logical screen descriptor, global palette and loop extension.
+         */
+        private void writeGifHeader() throws IOException
+        {
+            _out.write("GIF89a".getBytes());
+            writeShortLE(_width);
+            writeShortLE(_height);
+            _out.write(0xF7);
+            _out.write(0);
+            _out.write(0);
+            _palette.write(_out);
+            _out.write(new byte[]{0x21, (byte) 0xFF, 11});
+            _out.write("NETSCAPE2.0".getBytes());
+            _out.write(new byte[]{3, 1, 0, 0, 0});
+        }
+
+        /**
+         * Returns the 15 bit color key for given color.
+         */
+        private static int getColorKey(int argb)
+        {
+            return ((argb >> 9) & 0x7C00) | ((argb >> 6) & 0x3E0) | ((argb >> 3) & 0x1F);
+        }
+
+        /**
+         * Writes a 16 bit little-endian value to given stream.
+         */
+        private static void writeShortLE(ByteArrayOutputStream anOut, int aValue)
+        {
+            anOut.write(aValue & 0xff);
+            anOut.write((aValue >> 8) & 0xff);
+        }
+
+        /**
+         * A class to hold a palette of up to 255 colors (plus transparent) with a cache of nearest index by 15 bit color.
+         */
+        private static class Palette {
+
+            // The colors and number of colors used
+            int[]  _colors = new int[256];
+            int  _size;
+
+            // The palette index and squared color error for each 15 bit color (or -1 if not yet mapped)
+            int[]  _indexCache = new int[1 << 15], _errorCache = new int[1 << 15];
+
+            /**
+             * Creates a palette of the most used 15 bit colors (averaged) of pixels in given rect (skipping pixels
+             * equal to old pixels).
+             */
+            Palette(int[] thePixels, int[] oldPixels, int[] aRect, int aWidth)
+            {
+                // Get count and channel sums for each 15 bit color
+                int[] counts = new int[1 << 15];
+                long[] sums = new long[(1 << 15) * 3];
+                int rx = aRect[0], ry = aRect[1], rw = aRect[2], rh = aRect[3];
+                for (int y = 0; y < rh; y++) {
+                    for (int x = 0, i = (ry + y) * aWidth + rx; x < rw; x++, i++) {
+                        int argb = thePixels[i];
+                        if (oldPixels != null && oldPixels[i] == argb) continue;
+                        int key = getColorKey(argb);
+                        counts[key]++;
+                        sums[key * 3] += (argb >> 16) & 0xff;
+                        sums[key * 3 + 1] += (argb >> 8) & 0xff;
+                        sums[key * 3 + 2] += argb & 0xff;
+                    }
+                }
+
+                // Sort used colors by count and add top colors to palette
+                Integer[] keys = new Integer[counts.length];
+                for (int i = 0; i < keys.length; i++) keys[i] = i;
+                Arrays.sort(keys, (k1, k2) -> Integer.compare(counts[k2], counts[k1]));
+                for (int i = 0; i < TRANSPARENT && counts[keys[i]] > 0; i++, _size++) {
+                    int key = keys[i], count = counts[key];
+                    int r = (int) (sums[key * 3] / count), g = (int) (sums[key * 3 + 1] / count);
+                    int b = (int) (sums[key * 3 + 2] / count);
+                    _colors[i] = r << 16 | g << 8 | b;
+                }
+                _size = Math.max(_size, 1);
+
+                // Reset caches
+                Arrays.fill(_indexCache, -1);
+            }
+
+            /**
+             * Returns the palette index for given color (nearest used palette color, cached by 15 bit color).
+             */
+            int getColorIndex(int argb)
+            {
+                // If cached, just return
+                int key = getColorKey(argb);
+                int index = _indexCache[key];
+                if (index >= 0) return index;
+
+                // Find nearest palette color
+                int r = (argb >> 16) & 0xff, g = (argb >> 8) & 0xff, b = argb & 0xff, bestDist = Integer.MAX_VALUE;
+                for (int i = 0; i < _size; i++) {
+                    int rgb = _colors[i];
+                    int dr = ((rgb >> 16) & 0xff) - r, dg = ((rgb >> 8) & 0xff) - g, db = (rgb & 0xff) - b;
+                    int dist = dr * dr + dg * dg + db * db;
+                    if (dist < bestDist) {
+                        bestDist = dist;
+                        index = i;
+                    }
+                }
+                _errorCache[key] = bestDist;
+                return _indexCache[key] = index;
+            }
+
+            /**
+             * Returns the squared distance from given color to its palette color.
+             */
+            int getColorError(int argb)
+            {
+                int key = getColorKey(argb);
+                if (_indexCache[key] < 0) getColorIndex(argb);
+                return _errorCache[key];
+            }
+
+            /**
+             * Writes palette as 256 RGB entries (unused entries repeat first color).
+             */
+            void write(OutputStream anOut)
+            {
+                try {
+                    for (int i = 0; i < 256; i++) {
+                        int rgb = i < _size ? _colors[i] : _colors[0];
+                        anOut.write((rgb >> 16) & 0xff);
+                        anOut.write((rgb >> 8) & 0xff);
+                        anOut.write(rgb & 0xff);
+                    }
+                }
+                catch (IOException e) { throw new RuntimeException(e); }
+            }
+        }
+    }
+
+    /**
+     * A class to write GIF LZW data (with 8 bit minimum code size) as data sub-blocks.
+     */
+    private static class LzwEncoder {
+
+        // The output stream
+        ByteArrayOutputStream  _out;
+
+        // The current sub-block
+        byte[]  _block = new byte[255];
+        int  _blockLength;
+
+        // The bit accumulator
+        int  _bits, _bitCount;
+
+        // The hash table of (prefix code, byte) keys to codes
+        int[]  _hashKeys = new int[HASH_SIZE], _hashCodes = new int[HASH_SIZE];
+
+        // Constants
+        static final int HASH_SIZE = 5003, CLEAR = 256, END = 257, MAX_CODES = 4096;
+
+        /**
+         * Constructor.
+         */
+        LzwEncoder(ByteArrayOutputStream anOut)  { _out = anOut; }
+
+        /**
+         * Encodes given palette indices.
+         */
+        void encode(byte[] theIndices)
+        {
+            // Write min code size and clear code
+            _out.write(8);
+            int codeSize = 9, nextCode = END + 1;
+            Arrays.fill(_hashKeys, -1);
+            writeCode(CLEAR, codeSize);
+
+            // Iterate over indices
+            int prefix = theIndices[0] & 0xff;
+            for (int i = 1; i < theIndices.length; i++) {
+
+                // If prefix + byte is in table, extend prefix
+                int c = theIndices[i] & 0xff, key = prefix << 8 | c;
+                int h = key % HASH_SIZE;
+                while (_hashKeys[h] >= 0 && _hashKeys[h] != key) h = (h + 1) % HASH_SIZE;
+                if (_hashKeys[h] == key) {
+                    prefix = _hashCodes[h];
+                    continue;
+                }
+
+                // Write prefix code (and bump code size if next code won't fit)
+                writeCode(prefix, codeSize);
+                if (nextCode > (1 << codeSize) - 1 && codeSize < 12) codeSize++;
+                prefix = c;
+
+                // Add prefix + byte to table, or clear table if full
+                if (nextCode < MAX_CODES) {
+                    _hashKeys[h] = key;
+                    _hashCodes[h] = nextCode++;
+                }
+                else {
+                    writeCode(CLEAR, codeSize);
+                    Arrays.fill(_hashKeys, -1);
+                    nextCode = END + 1;
+                    codeSize = 9;
+                }
+            }
+
+            // Write last prefix and end code, then flush bits and block terminator
+            writeCode(prefix, codeSize);
+            if (nextCode > (1 << codeSize) - 1 && codeSize < 12) codeSize++;
+            writeCode(END, codeSize);
+            if (_bitCount > 0) writeByte(_bits & 0xff);
+            flushBlock();
+            _out.write(0);
+        }
+
+        /**
+         * Writes a code with given bit size.
+         */
+        private void writeCode(int aCode, int aSize)
+        {
+            _bits |= aCode << _bitCount;
+            _bitCount += aSize;
+            while (_bitCount >= 8) {
+                writeByte(_bits & 0xff);
+                _bits >>>= 8;
+                _bitCount -= 8;
+            }
+        }
+
+        /**
+         * Writes a byte to current sub-block.
+         */
+        private void writeByte(int aByte)
+        {
+            _block[_blockLength++] = (byte) aByte;
+            if (_blockLength == 255) flushBlock();
+        }
+
+        /**
+         * Writes current sub-block.
+         */
+        private void flushBlock()
+        {
+            if (_blockLength == 0) return;
+            _out.write(_blockLength);
+            _out.write(_block, 0, _blockLength);
+            _blockLength = 0;
+        }
+    }
+
+    /**
+     * An AnimWriter for animated PNG (APNG). Frame count is patched into the header when finished.
+     */
+    public static class ApngWriter extends AnimWriter {
+
+        // The file
+        File  _file;
+
+        // The number of frames written
+        int  _frameCount;
+
+        // The chunk sequence number
+        int  _sequence;
+
+        // The file offset of the acTL chunk data
+        static final int ACTL_OFFSET = 8 + 25 + 8;
+
+        /**
+         * Constructor for given file and frame rate.
+         */
+        public ApngWriter(File aFile, int aFrameRate)
+        {
+            super(aFile, aFrameRate);
+            _file = aFile;
+        }
+
+        /**
+         * Writes PNG signature, IHDR and acTL (with frame count placeholder).
+         */
+        protected void writeHeader()
+        {
+            try {
+                _out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+                ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+                writeInt(ihdr, _width);
+                writeInt(ihdr, _height);
+                ihdr.write(new byte[]{8, 6, 0, 0, 0});
+                writeChunk("IHDR", ihdr.toByteArray());
+                writeChunk("acTL", new byte[8]);
+            }
+            catch (Exception e) { throw new RuntimeException(e); }
+        }
+
+        /**
+         * Encodes pixels in rect as deflated RGBA scanlines with Sub filter (unchanged pixels transparent).
+         */
+        protected byte[] encodeFrame(int[] thePixels, int[] oldPixels, int[] aRect)
+        {
+            int rx = aRect[0], ry = aRect[1], rw = aRect[2], rh = aRect[3];
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(rw * rh + 64);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+                byte[] row = new byte[1 + rw * 4];
+                row[0] = 1;
+                for (int y = 0; y < rh; y++) {
+                    int last = 0;
+                    for (int x = 0, i = (ry + y) * _width + rx; x < rw; x++, i++) {
+                        int argb = oldPixels != null && oldPixels[i] == thePixels[i] ? 0 : thePixels[i];
+                        int j = 1 + x * 4;
+                        row[j] = (byte) ((argb >> 16) - (last >> 16));
+                        row[j + 1] = (byte) ((argb >> 8) - (last >> 8));
+                        row[j + 2] = (byte) (argb - last);
+                        row[j + 3] = (byte) ((argb >>> 24) - (last >>> 24));
+                        last = argb;
+                    }
+                    out.write(row);
+                }
+            }
+            catch (Exception e) { throw new RuntimeException(e); }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Writes fcTL and IDAT (first frame) or fdAT chunks.
+         */
+        protected void writeFrame(int[] aRect, byte[] theData, int aStartTime, int anEndTime) throws IOException
+        {
+            // Write frame control chunk
+            ByteArrayOutputStream fctl = new ByteArrayOutputStream(26);
+            writeInt(fctl, _sequence++);
+            writeInt(fctl, aRect[2]);
+            writeInt(fctl, aRect[3]);
+            writeInt(fctl, aRect[0]);
+            writeInt(fctl, aRect[1]);
+            int delay = Math.min(anEndTime - aStartTime, 0xFFFF);
+            fctl.write(new byte[]{(byte) (delay >> 8), (byte) delay, 1000 >> 8, (byte) 1000, 0, (byte) (_frameCount > 0 ? 1 : 0)});
+            writeChunk("fcTL", fctl.toByteArray());
+
+            // Write data as IDAT for first frame, fdAT for others
+            if (_frameCount == 0)
+                writeChunk("IDAT", theData);
+            else {
+                ByteArrayOutputStream fdat = new ByteArrayOutputStream(theData.length + 4);
+                writeInt(fdat, _sequence++);
+                fdat.write(theData);
+                writeChunk("fdAT", fdat.toByteArray());
+            }
+            _frameCount++;
+        }
+
+        /**
+         * Writes IEND, then patches frame count into acTL chunk.
+         */
+        protected void writeTrailer() throws IOException
+        {
+            writeChunk("IEND", new byte[0]);
+            _out.close();
+
+            // Patch acTL data (frame count, loop forever) and CRC
+            ByteArrayOutputStream actl = new ByteArrayOutputStream(8);
+            writeInt(actl, _frameCount);
+            writeInt(actl, 0);
+            byte[] data = actl.toByteArray();
+            try (RandomAccessFile raf = new RandomAccessFile(_file, "rw")) {
+                raf.seek(ACTL_OFFSET);
+                raf.write(data);
+                raf.writeInt((int) getCRC("acTL", data));
+            }
+        }
+
+        /**
+         * Writes a chunk.
+         */
+        private void writeChunk(String aType, byte[] theData) throws IOException
+        {
+            writeInt(_out, theData.length);
+            _out.write(aType.getBytes());
+            _out.write(theData);
+            writeInt(_out, (int) getCRC(aType, theData));
+        }
+
+        /**
+         * Returns the CRC for chunk type and data.
+         */
+        private static long getCRC(String aType, byte[] theData)
+        {
+            CRC32 crc = new CRC32();
+            crc.update(aType.getBytes());
+            crc.update(theData);
+            return crc.getValue();
+        }
+
+        /**
+         * Writes a 32 bit big-endian value.
+         */
+        private static void writeInt(OutputStream anOut, int aValue) throws IOException
+        {
+            anOut.write(aValue >>> 24);
+            anOut.write(aValue >>> 16);
+            anOut.write(aValue >>> 8);
+            anOut.write(aValue);
+        }
+    }
+}
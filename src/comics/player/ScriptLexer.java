@@ -0,0 +1,201 @@
+package comics.player;
+
+/**
+ * A class to break script line text into token spans (start, end, kind) over the original text, without creating
+ * intermediate strings. Tokens are separated by whitespace, commas and quotes.
+ */
+public class ScriptLexer {
+
+    // The text
+    String  _text = "";
+
+    // The token spans as start/end pairs
+    int[]  _spans = new int[16];
+
+    // The number of tokens
+    int  _count;
+
+    // The token strings (lowercase), created on first request and kept until text changes
+    String[]  _strings;
+
+    // Constants for token kinds
+    public static final int STAR = 0;
+    public static final int ACTION = 1;
+    public static final int PREDICATE = 2;
+
+    /**
+     * Constructor.
+     */
+    public ScriptLexer()  { }
+
+    /**
+     * Constructor for given text.
+     */
+    public ScriptLexer(String aStr)
+    {
+        setText(aStr);
+    }
+
+    /**
+     * Returns the text.
+     */
+    public String getText()  { return _text; }
+
+    /**
+     * Sets the text and finds tokens.
+     */
+    public void setText(String aStr)
+    {
+        _text = aStr != null ? aStr : "";
+        _count = 0;
+        _strings = null;
+
+        // Iterate over chars and add span for each run of non-separator chars
+        int length = _text.length();
+        for (int i = 0; i < length; ) {
+
+            // Skip separators
+            while (i < length && isSeparator(_text.charAt(i))) i++;
+            if (i == length) break;
+
+            // Find token end and add span
+            int start = i;
+            while (i < length && !isSeparator(_text.charAt(i))) i++;
+            addSpan(start, i);
+        }
+    }
+
+    /**
+     * Adds a token span.
+     */
+    private void addSpan(int aStart, int anEnd)
+    {
+        if (_count * 2 + 2 > _spans.length) {
+            int[] spans = new int[_spans.length * 2];
+            System.arraycopy(_spans, 0, spans, 0, _count * 2);
+            _spans = spans;
+        }
+        _spans[_count * 2] = aStart;
+        _spans[_count * 2 + 1] = anEnd;
+        _count++;
+    }
+
+    /**
+     * Returns the number of tokens.
+     */
+    public int getTokenCount()  { return _count; }
+
+    /**
+     * Returns the start char index of token at index.
+     */
+    public int getTokenStart(int anIndex)  { return _spans[anIndex * 2]; }
+
+    /**
+     * Returns the end char index of token at index.
+     */
+    public int getTokenEnd(int anIndex)  { return _spans[anIndex * 2 + 1]; }
+
+    /**
+     * Returns the length of token at index.
+     */
+    public int getTokenLength(int anIndex)  { return getTokenEnd(anIndex) - getTokenStart(anIndex); }
+
+    /**
+     * Returns the kind of token at index (STAR, ACTION or PREDICATE).
+     */
+    public int getTokenKind(int anIndex)  { return Math.min(anIndex, PREDICATE); }
+
+    /**
+     * Returns whether token at index is equal to given string (ignoring case).
+     */
+    public boolean isTokenEqual(int anIndex, String aStr)
+    {
+        int start = getTokenStart(anIndex), length = getTokenLength(anIndex);
+        return length == aStr.length() && _text.regionMatches(true, start, aStr, 0, length);
+    }
+
+    /**
+     * Returns whether token at index starts with given string (ignoring case).
+     */
+    public boolean isTokenStartsWith(int anIndex, String aStr)
+    {
+        int start = getTokenStart(anIndex), length = getTokenLength(anIndex);
+        return length >= aStr.length() && _text.regionMatches(true, start, aStr, 0, aStr.length());
+    }
+
+    /**
+     * Returns the string in given strings equal to token at index (ignoring case), or null if none match.
+     */
+    public String getTokenMatch(int anIndex, String ... theStrings)
+    {
+        if (anIndex >= _count) return null;
+        for (String str : theStrings)
+            if (isTokenEqual(anIndex, str))
+                return str;
+        return null;
+    }
+
+    /**
+     * Returns the index of first token equal to given string (ignoring case), starting at given token index.
+     */
+    public int indexOfToken(String aStr, int aStart)
+    {
+        for (int i = aStart; i < _count; i++)
+            if (isTokenEqual(i, aStr))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns whether any token is equal to given string (ignoring case).
+     */
+    public boolean hasToken(String aStr)
+    {
+        return indexOfToken(aStr, 0) >= 0;
+    }
+
+    /**
+     * Returns the index of token containing or ending at given char index (or -1 if in separator).
+     */
+    public int getTokenIndexForCharIndex(int aCharIndex)
+    {
+        for (int i = 0; i < _count; i++) {
+            if (aCharIndex < getTokenStart(i)) return -1;
+            if (aCharIndex <= getTokenEnd(i)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the token at index as lowercase string (created once per text).
+     */
+    public String getTokenString(int anIndex)
+    {
+        // If already created, just return
+        String[] strings = _strings;
+        if (strings == null) strings = _strings = new String[_count];
+        if (strings[anIndex] != null) return strings[anIndex];
+
+        // Create, set and return
+        String str = _text.substring(getTokenStart(anIndex), getTokenEnd(anIndex)).toLowerCase();
+        return strings[anIndex] = str;
+    }
+
+    /**
+     * Returns all tokens as lowercase strings.
+     */
+    public String[] getTokenStrings()
+    {
+        String[] strings = new String[_count];
+        for (int i = 0; i < _count; i++) strings[i] = getTokenString(i);
+        return strings;
+    }
+
+    /**
+     * Returns whether given char separates tokens.
+     */
+    public static boolean isSeparator(char aChar)
+    {
+        return aChar == ',' || aChar == '"' || Character.isWhitespace(aChar);
+    }
+}
@@ -1,5 +1,4 @@
 package comics.player;
-import snap.geom.Pos;
 import snap.props.PropObject;
 import snap.util.*;
 
@@ -14,6 +13,9 @@ public class ScriptLine extends PropObject implements Loadable {
     // The line text
     String  _text;
 
+    // The lexer holding token spans for text
+    ScriptLexer  _lexer;
+
     // The words
     String[]  _words;
 
@@ -52,11 +54,21 @@ public class ScriptLine extends PropObject implements Loadable {
     public void setText(String aStr)
     {
         _words = null;
+        if (_lexer != null) _lexer.setText(aStr);
         _star = null;
         _action = null;
         firePropChange(Text_Prop, _text, _text = aStr);
     }
 
+    /**
+     * Returns the lexer with token spans for text.
+     */
+    public ScriptLexer getLexer()
+    {
+        if (_lexer != null) return _lexer;
+        return _lexer = new ScriptLexer(getText());
+    }
+
     /**
      * Returns the words.
      */
@@ -65,10 +77,16 @@ public class ScriptLine extends PropObject implements Loadable {
         // If already set, just return
         if (_words != null) return _words;
 
-        // Get text and words
-        String text = getText().toLowerCase().replace(",", " ").replace("\"", "");
-        String[] words = text.split("\\s");
-        return _words = words;
+        // Get words from lexer tokens
+        return _words = getLexer().getTokenStrings();
+    }
+
+    /**
+     * Returns whether line has given word (ignoring case).
+     */
+    public boolean hasWord(String aWord)
+    {
+        return getLexer().hasToken(aWord);
     }
 
     /**
@@ -84,10 +102,8 @@ public class ScriptLine extends PropObject implements Loadable {
      */
     public String getStarName()
     {
-        String[] words = getWords();
-        if (words.length == 0) return null;
-        String word = words[0];
-        return !word.isEmpty() ? word : null;
+        ScriptLexer lexer = getLexer();
+        return lexer.getTokenCount() > ScriptLexer.STAR ? lexer.getTokenString(ScriptLexer.STAR) : null;
     }
 
     /**
@@ -95,10 +111,8 @@ public class ScriptLine extends PropObject implements Loadable {
      */
     public String getActionName()
     {
-        String[] words = getWords();
-        if (words.length < 2) return null;
-        String word = words[1];
-        return !word.isEmpty() ? word : null;
+        ScriptLexer lexer = getLexer();
+        return lexer.getTokenCount() > ScriptLexer.ACTION ? lexer.getTokenString(ScriptLexer.ACTION) : null;
     }
 
     /**
@@ -107,7 +121,7 @@ public class ScriptLine extends PropObject implements Loadable {
     public Star getStar()
     {
         if (_star != null) return _star;
-        return getStarImpl();
+        return _star = getStarImpl();
     }
 
     /**
@@ -115,12 +129,12 @@ public class ScriptLine extends PropObject implements Loadable {
      */
     protected Star getStarImpl()
     {
-        String name = getStarName();
-        if (name == null) return null;
-        if (name.equals("setting")) return _script.getStage();
-        if (name.equals("camera")) return _script._player.getCamera();
+        ScriptLexer lexer = getLexer();
+        if (lexer.getTokenCount() <= ScriptLexer.STAR) return null;
+        if (lexer.isTokenEqual(ScriptLexer.STAR, "setting")) return _script.getStage();
+        if (lexer.isTokenEqual(ScriptLexer.STAR, "camera")) return _script._player.getCamera();
         Star star = _script.getStage().getActor(this);
-        if (star == null) System.out.println("ScriptLine: Couldn't find star named: " + name);
+        if (star == null) System.out.println("ScriptLine: Couldn't find star named: " + getStarName());
         return star;
     }
 
@@ -135,6 +149,16 @@ public class ScriptLine extends PropObject implements Loadable {
         getScript().setLineText(text.toString(), getIndex());
     }
 
+    /**
+     * Clears the cached Star and Action (so they are resolved again, e.g. after asset index loads).
+     */
+    protected void clearStar()
+    {
+        _star = null;
+        _action = null;
+        _loadable = null;
+    }
+
     /**
      * Returns the action.
      */
@@ -174,18 +198,22 @@ public class ScriptLine extends PropObject implements Loadable {
      */
     public void run()
     {
-        // Get star and make sure it's visible
         Star star = getStar();
-        if (star == null) return;
-        if (star instanceof Actor actor && !actor.isVisible()) {
-            actor.setVisible(true);
-            actor.setLocXY(Pos.BOTTOM_LEFT, 10, 10, null);
-        }
+        Action action = star != null ? getAction() : null;
+        ScriptProgram.run(star, action);
+    }
 
-        // Get action and run
-        Action action = getAction();
-        if (action == null) return;
-        action.run();
+    /**
+     * Sets the priority to load line assets with (for assets that load in background).
+     */
+    public void setLoadPriority(int aPriority)
+    {
+        Star star = getStar();
+        if (star instanceof Actor actor && actor.getAsset() != null)
+            actor.getAsset().setLoadPriority(aPriority);
+        Action action = star != null ? getAction() : null;
+        if (action instanceof ActorAction actorAction && actorAction._loadable instanceof Asset asset)
+            asset.setLoadPriority(aPriority);
     }
 
     /**
@@ -214,6 +242,12 @@ public class ScriptLine extends PropObject implements Loadable {
     {
         if (_loadable != null) return _loadable;
         Star star = getStar();
+
+        // If star not found because asset index is still loading, wait for index
+        AssetIndex assetIndex = _script.getStage().getAssetIndex();
+        if (star == null && getStarName() != null && !assetIndex.isLoaded())
+            return assetIndex;
+
         Action action = getAction();
         if (star != null && !star.isLoaded()) System.out.println("ScriptLine.getLoadable: Star not loaded");
         if (action != null && !action.isLoaded()) System.out.println("ScriptLine.getLoadable: Action not loaded");
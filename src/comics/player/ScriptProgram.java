@@ -0,0 +1,139 @@
+package comics.player;
+import java.util.List;
+import snap.geom.Pos;
+
+/**
+ * A class to hold a compiled Script: an immutable list of steps with resolved Star, Action and runtime for each line,
+ * so that running a line does no string parsing or asset lookups.
+ */
+public class ScriptProgram {
+
+    // The steps
+    private final Step[]  _steps;
+
+    // The empty program
+    public static final ScriptProgram EMPTY = new ScriptProgram(new Step[0]);
+
+    /**
+     * Constructor for given steps.
+     */
+    private ScriptProgram(Step[] theSteps)
+    {
+        _steps = theSteps;
+    }
+
+    /**
+     * Returns the number of steps.
+     */
+    public int getStepCount()  { return _steps.length; }
+
+    /**
+     * Returns the step at given index.
+     */
+    public Step getStep(int anIndex)  { return _steps[anIndex]; }
+
+    /**
+     * Returns the runtimes of steps.
+     */
+    public int[] getRunTimes()
+    {
+        int[] times = new int[_steps.length];
+        for (int i = 0; i < _steps.length; i++) times[i] = _steps[i].getRunTime();
+        return times;
+    }
+
+    /**
+     * Returns a new program with steps in given range replaced by steps compiled for given lines.
+     */
+    public ScriptProgram replaceSteps(int aStart, int anEnd, List<ScriptLine> theLines)
+    {
+        int count = theLines.size();
+        Step[] steps = new Step[_steps.length - (anEnd - aStart) + count];
+        System.arraycopy(_steps, 0, steps, 0, aStart);
+        for (int i = 0; i < count; i++) steps[aStart + i] = new Step(theLines.get(i));
+        System.arraycopy(_steps, anEnd, steps, aStart + count, _steps.length - anEnd);
+        return new ScriptProgram(steps);
+    }
+
+    /**
+     * Returns a program compiled for given lines.
+     */
+    public static ScriptProgram compile(List<ScriptLine> theLines)
+    {
+        return EMPTY.replaceSteps(0, 0, theLines);
+    }
+
+    /**
+     * Runs given action for given star, making sure star is visible.
+     */
+    public static void run(Star aStar, Action anAction)
+    {
+        // Make sure star is visible
+        if (aStar == null) return;
+        if (aStar instanceof Actor actor && !actor.isVisible()) {
+            actor.setVisible(true);
+            actor.setLocXY(Pos.BOTTOM_LEFT, 10, 10, null);
+        }
+
+        // Run action
+        if (anAction == null) return;
+        anAction.run();
+    }
+
+    /**
+     * A class to hold a compiled ScriptLine.
+     */
+    public static class Step {
+
+        // The line
+        private final ScriptLine  _line;
+
+        // The star
+        private final Star  _star;
+
+        // The action
+        private final Action  _action;
+
+        // The runtime
+        private final int  _runTime;
+
+        /**
+         * Constructor for given line.
+         */
+        public Step(ScriptLine aLine)
+        {
+            _line = aLine;
+            _star = aLine.getStar();
+            _action = aLine.getAction();
+            _runTime = _action != null ? _action.getRunTime() : 1;
+        }
+
+        /**
+         * Returns the line.
+         */
+        public ScriptLine getLine()  { return _line; }
+
+        /**
+         * Returns the star.
+         */
+        public Star getStar()  { return _star; }
+
+        /**
+         * Returns the action.
+         */
+        public Action getAction()  { return _action; }
+
+        /**
+         * Returns the runtime.
+         */
+        public int getRunTime()  { return _runTime; }
+
+        /**
+         * Executes step.
+         */
+        public void run()
+        {
+            ScriptProgram.run(_star, _action);
+        }
+    }
+}
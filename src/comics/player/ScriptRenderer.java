@@ -0,0 +1,231 @@
+package comics.player;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import snap.gfx.*;
+import snap.util.Loadable;
+import snap.view.ViewUtils;
+
+/**
+ * A class to render a script to frames offline, with a virtual clock at a fixed frame rate (instead of wall-clock
+ * ViewAnim timing), so it can run headless and faster than real time.
+ */
+public class ScriptRenderer {
+
+    // The PlayerView
+    PlayerView  _player;
+
+    // The frames per second
+    int  _frameRate = 30;
+
+    // The frame size
+    double  _frameWidth = 720, _frameHeight = 405;
+
+    // The max time to wait for a line to load (in millis)
+    long  _loadTimeout = 30000;
+
+    /**
+     * Constructor.
+     */
+    public ScriptRenderer()
+    {
+        this(AssetIndex.get());
+    }
+
+    /**
+     * Constructor for given asset index (renderers on separate threads should each have their own).
+     */
+    public ScriptRenderer(AssetIndex anIndex)
+    {
+        _player = new PlayerView();
+        _player.setHeadless(true);
+        _player.setShowControls(false);
+        _player.getStage().setAssetIndex(anIndex);
+
+        // Wait for asset index before script is set, so actors resolve and runtimes are known before rendering
+        waitForLoad(anIndex);
+    }
+
+    /**
+     * Constructor for given script text.
+     */
+    public ScriptRenderer(String aScriptText)
+    {
+        this();
+        setScriptText(aScriptText);
+    }
+
+    /**
+     * Constructor for given script text and asset index.
+     */
+    public ScriptRenderer(String aScriptText, AssetIndex anIndex)
+    {
+        this(anIndex);
+        setScriptText(aScriptText);
+    }
+
+    /**
+     * Returns the PlayerView.
+     */
+    public PlayerView getPlayer()  { return _player; }
+
+    /**
+     * Returns the Script.
+     */
+    public Script getScript()  { return _player.getScript(); }
+
+    /**
+     * Sets the script text.
+     */
+    public void setScriptText(String aStr)
+    {
+        _player.setScriptText(aStr);
+    }
+
+    /**
+     * Returns the frames per second.
+     */
+    public int getFrameRate()  { return _frameRate; }
+
+    /**
+     * Sets the frames per second.
+     */
+    public void setFrameRate(int aValue)  { _frameRate = aValue; }
+
+    /**
+     * Returns the frame width.
+     */
+    public double getFrameWidth()  { return _frameWidth; }
+
+    /**
+     * Returns the frame height.
+     */
+    public double getFrameHeight()  { return _frameHeight; }
+
+    /**
+     * Sets the frame size.
+     */
+    public void setFrameSize(double aWidth, double aHeight)
+    {
+        _frameWidth = aWidth;
+        _frameHeight = aHeight;
+    }
+
+    /**
+     * Returns the time for given frame index.
+     */
+    public int getFrameTime(int aFrame)
+    {
+        return (int) Math.round(aFrame * 1000d / _frameRate);
+    }
+
+    /**
+     * Returns the number of frames for whole script.
+     */
+    public int getFrameCount()
+    {
+        return getFrameCountForTime(getScript().getRunTime());
+    }
+
+    /**
+     * Returns the number of frames needed to cover given time (including frame at end).
+     */
+    public int getFrameCountForTime(int aTime)
+    {
+        return (int) (aTime * (long) _frameRate / 1000) + 1;
+    }
+
+    /**
+     * Renders all frames of script to given sink.
+     */
+    public void render(FrameSink aSink)
+    {
+        render(0, getFrameCount(), aSink);
+    }
+
+    /**
+     * Renders frames in given range to given sink.
+     */
+    public void render(int aStartFrame, int anEndFrame, FrameSink aSink)
+    {
+        // Size camera to frame size
+        CameraView camera = _player.getCamera();
+        camera.setSize(_frameWidth, _frameHeight);
+
+        // Iterate over frames: set line and line time for frame time and paint
+        Script script = getScript();
+        for (int frame = aStartFrame; frame < anEndFrame; frame++) {
+
+            // Get line and line time for frame time
+            int time = getFrameTime(frame);
+            int line = script.getLineForTime(time);
+            if (line < 0) break;
+            int lineTime = Math.min(time - script.getLineStartTime(line), script.getLineRunTime(line));
+
+            // If new line, make sure it and any lines run on the way to it (e.g. lines shorter than a frame) are
+            // loaded and run it (if seeking back, lines are replayed from start)
+            int runLine = _player.getRunLine();
+            if (line != runLine) {
+                for (int i = runLine < line ? runLine + 1 : 0; i <= line; i++)
+                    waitForLoad(script.getLine(i));
+                _player.setRunLine(line);
+            }
+
+            // Set time and paint frame
+            camera.setAnimTimeDeep(lineTime);
+            Image image = renderFrame();
+            aSink.addFrame(image, frame, time);
+        }
+
+        // Notify sink
+        aSink.finish();
+    }
+
+    /**
+     * Renders the current state of the camera to new image.
+     */
+    protected Image renderFrame()
+    {
+        // Layout camera (zoom may have changed)
+        CameraView camera = _player.getCamera();
+        camera.layout();
+
+        // Create image and paint camera
+        Image image = Image.getImageForSizeAndDpiScale(_frameWidth, _frameHeight, false, 1);
+        Painter pntr = image.getPainter();
+        pntr.setColor(Color.WHITE);
+        pntr.fillRect(0, 0, _frameWidth, _frameHeight);
+        ViewUtils.paintView(camera, pntr);
+        return image;
+    }
+
+    /**
+     * Waits for given loadable to load (up to load timeout).
+     */
+    protected void waitForLoad(Loadable aLoadable)
+    {
+        if (aLoadable.isLoaded()) return;
+        CountDownLatch latch = new CountDownLatch(1);
+        aLoadable.addLoadListener(() -> latch.countDown());
+        try {
+            if (!latch.await(_loadTimeout, TimeUnit.MILLISECONDS))
+                System.err.println("ScriptRenderer.waitForLoad: Timeout loading " + aLoadable);
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * An interface to receive rendered frames.
+     */
+    public interface FrameSink {
+
+        /**
+         * Called when a frame is rendered.
+         */
+        void addFrame(Image anImage, int aFrame, int aTime);
+
+        /**
+         * Called when rendering is finished.
+         */
+        default void finish()  { }
+    }
+}
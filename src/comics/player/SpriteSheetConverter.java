@@ -0,0 +1,134 @@
+package comics.player;
+import java.io.File;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import snap.gfx.*;
+import snap.util.FilePathUtils;
+import snap.web.*;
+
+/**
+ * A class to convert GIF files to half-scale PNG sprite sheets on a worker pool (with frames scaled in parallel),
+ * so assets can keep showing the old sheet until the new one is ready. Run main() with a ComicLib root directory to
+ * convert all out of date GIF files in the tree.
+ */
+public class SpriteSheetConverter {
+
+    // The worker pool
+    ExecutorService  _executor;
+
+    // The conversions by PNG URL string (kept, so each file is converted once per run)
+    Map<String, CompletableFuture<Void>>  _conversions = new ConcurrentHashMap<>();
+
+    // The shared converter
+    private static SpriteSheetConverter  _shared;
+
+    /**
+     * Constructor for given number of worker threads.
+     */
+    public SpriteSheetConverter(int aThreadCount)
+    {
+        _executor = Executors.newFixedThreadPool(aThreadCount, run -> {
+            Thread thread = new Thread(run, "SpriteSheetConverter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Converts peer GIF of given PNG URL in background and calls given runnable when done (once per conversion).
+     */
+    public CompletableFuture<Void> convertLater(WebURL aPngURL, Runnable aRun)
+    {
+        String key = aPngURL.getString();
+        CompletableFuture<Void> conversion = _conversions.computeIfAbsent(key, k ->
+            CompletableFuture.runAsync(() -> convert(aPngURL), _executor)
+                .handle((v, e) -> {
+                    if (e != null) System.err.println("SpriteSheetConverter: Error converting " + key + ": " + e);
+                    return null;
+                }));
+        return aRun != null ? conversion.thenRun(aRun) : conversion;
+    }
+
+    /**
+     * Converts peer GIF of given PNG URL to half-scale sprite sheet and saves it to PNG URL.
+     */
+    public void convert(WebURL aPngURL)
+    {
+        // Get URL for GIF file
+        WebURL url = WebURL.getUrl(FilePathUtils.getPeerPath(aPngURL.getString(), aPngURL.getFilenameSimple() + ".gif"));
+        Image img = Image.getImageForSource(url);
+
+        // Scale frames in parallel and create sprite sheet image (or just scale image if not animated)
+        Image sheet;
+        ImageSet imageSet = img.getImageSet();
+        if (imageSet != null) {
+            List<Image> frames = imageSet.getImages().parallelStream().map(frame -> frame.copyForScale(.5)).toList();
+            sheet = new ImageSet(frames).getSpriteSheetImage();
+        }
+        else sheet = img.copyForScale(.5);
+
+        // Get PNG bytes and save
+        byte[] bytes = sheet.getBytesPNG();
+        File javaFile = aPngURL.getJavaFile();
+        if (javaFile != null) {
+            try { Files.write(javaFile.toPath(), bytes); }
+            catch (Exception e) { throw new RuntimeException(e); }
+        }
+        else {
+            WebFile file = aPngURL.createFile(false);
+            file.setBytes(bytes);
+            file.save();
+        }
+    }
+
+    /**
+     * Waits for all conversions.
+     */
+    public void waitForAll()
+    {
+        CompletableFuture.allOf(_conversions.values().toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * Returns the shared converter.
+     */
+    public static synchronized SpriteSheetConverter getShared()
+    {
+        if (_shared != null) return _shared;
+        return _shared = new SpriteSheetConverter(Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+    }
+
+    /**
+     * Converts all GIF files in given ComicLib root directory that are newer than their PNG sprite sheets.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length == 0) {
+            System.err.println("Usage: SpriteSheetConverter <ComicLib root directory>");
+            return;
+        }
+
+        // Get GIF files newer than PNG peers
+        List<Path> gifPaths = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(Paths.get(args[0]))) {
+            paths.filter(path -> path.toString().toLowerCase().endsWith(".gif")).forEach(gifPaths::add);
+        }
+        List<WebURL> pngURLs = new ArrayList<>();
+        for (Path gifPath : gifPaths) {
+            String gifStr = gifPath.toString();
+            Path pngPath = Paths.get(gifStr.substring(0, gifStr.length() - 4) + ".png");
+            if (!Files.exists(pngPath) || Files.getLastModifiedTime(gifPath).compareTo(Files.getLastModifiedTime(pngPath)) > 0)
+                pngURLs.add(WebURL.getUrl(pngPath.toFile()));
+        }
+
+        // Convert with all cores
+        long time = System.currentTimeMillis();
+        SpriteSheetConverter converter = new SpriteSheetConverter(Runtime.getRuntime().availableProcessors());
+        for (WebURL pngURL : pngURLs)
+            converter.convertLater(pngURL, () -> System.out.println("Converted " + pngURL.getPath()));
+        converter.waitForAll();
+        System.out.println("SpriteSheetConverter: Converted " + pngURLs.size() + " files in " + (System.currentTimeMillis() - time) + "ms");
+    }
+}
@@ -0,0 +1,68 @@
+package comics.player;
+import snap.gfx.*;
+
+/**
+ * A class to view frames of a sprite strip image (frames laid out left to right) without copying each frame into
+ * its own image. Frames are painted straight from the strip with a source rect.
+ */
+public class SpriteStrip {
+
+    // The strip image
+    Image  _image;
+
+    // The number of frames
+    int  _frameCount;
+
+    /**
+     * Constructor for given strip image and frame count.
+     */
+    public SpriteStrip(Image anImage, int aFrameCount)
+    {
+        _image = anImage;
+        _frameCount = Math.max(aFrameCount, 1);
+    }
+
+    /**
+     * Returns the strip image.
+     */
+    public Image getImage()  { return _image; }
+
+    /**
+     * Returns the number of frames.
+     */
+    public int getFrameCount()  { return _frameCount; }
+
+    /**
+     * Returns the frame width.
+     */
+    public double getFrameWidth()  { return _image.getWidth() / _frameCount; }
+
+    /**
+     * Returns the frame height.
+     */
+    public double getFrameHeight()  { return _image.getHeight(); }
+
+    /**
+     * Returns a new image for given frame (copied from strip).
+     */
+    public Image getFrameImage(int aFrame)
+    {
+        double dpiScale = _image.getPixWidth() / _image.getWidth();
+        Image img = Image.getImageForSizeAndDpiScale(getFrameWidth(), getFrameHeight(), true, dpiScale);
+        paintFrame(img.getPainter(), aFrame, 0, 0, img.getWidth(), img.getHeight());
+        return img;
+    }
+
+    /**
+     * Paints given frame in given rect.
+     */
+    public void paintFrame(Painter aPntr, int aFrame, double aX, double aY, double aW, double aH)
+    {
+        // Get frame index in strip (clamped)
+        int frame = Math.max(0, Math.min(aFrame, _frameCount - 1));
+
+        // Get source rect in image pixels and paint
+        double frameW = _image.getPixWidth() / (double) _frameCount, frameH = _image.getPixHeight();
+        aPntr.drawImage(_image, frame * frameW, 0, frameW, frameH, aX, aY, aW, aH);
+    }
+}
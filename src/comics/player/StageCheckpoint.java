@@ -0,0 +1,228 @@
+package comics.player;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import snap.geom.Rect;
+import snap.gfx.Image;
+import snap.view.View;
+
+/**
+ * A class to capture the state of stage, actors and camera after a script line has finished, so that seeking can
+ * restore it and replay only the remaining lines. Images are held as asset references (resolved on restore), which
+ * the player marks in use (see StageView.setCheckpointAssets) so AssetImageCache keeps their images loaded.
+ */
+public class StageCheckpoint {
+
+    // The script line that this checkpoint follows
+    int  _line;
+
+    // The stage setting asset
+    Asset  _backAsset;
+
+    // The camera zoom and blur
+    double  _zoom, _blur;
+
+    // The actor states
+    List<ActorState>  _actorStates = new ArrayList<>();
+
+    // The speak view states
+    List<SpeakState>  _speakStates = new ArrayList<>();
+
+    /**
+     * Constructor to capture state of given player after given line.
+     */
+    public StageCheckpoint(PlayerView aPlayer, int aLine)
+    {
+        _line = aLine;
+
+        // Capture stage and camera
+        StageView stage = aPlayer.getStage();
+        CameraView camera = aPlayer.getCamera();
+        _backAsset = stage.getBackAsset();
+        _zoom = camera.getZoom();
+        _blur = camera.getBlur();
+
+        // Capture actors
+        for (Actor actor : stage._actors.values())
+            _actorStates.add(new ActorState(actor));
+
+        // Capture speak views (still showing when line anims are cleared at line end)
+        for (View child : stage.getChildren())
+            if (child instanceof SpeakView speakView)
+                _speakStates.add(new SpeakState(speakView));
+    }
+
+    /**
+     * Returns the script line that this checkpoint follows.
+     */
+    public int getLine()  { return _line; }
+
+    /**
+     * Adds the assets of this checkpoint (setting and actor images) to given set.
+     */
+    public void addAssets(Set<Asset> theAssets)
+    {
+        if (_backAsset != null)
+            theAssets.add(_backAsset);
+        for (ActorState actorState : _actorStates) {
+            theAssets.add(actorState._actor.getAsset());
+            if (actorState._imageAsset != null)
+                theAssets.add(actorState._imageAsset);
+        }
+    }
+
+    /**
+     * Restores the state of given player to this checkpoint.
+     */
+    public void restore(PlayerView aPlayer)
+    {
+        // Reset stage (resets any actors created after checkpoint) and remove speak views
+        StageView stage = aPlayer.getStage();
+        aPlayer.resetStage();
+        List<View> speakViews = new ArrayList<>();
+        for (View child : stage.getChildren())
+            if (child instanceof SpeakView)
+                speakViews.add(child);
+        speakViews.forEach(stage::removeChild);
+
+        // Restore stage and camera
+        stage.setBackAsset(_backAsset);
+        aPlayer.getCamera().setZoom(_zoom);
+        aPlayer.getCamera().setBlur(_blur);
+
+        // Restore actors and speak views
+        for (ActorState actorState : _actorStates)
+            actorState.restore();
+        for (SpeakState speakState : _speakStates)
+            speakState.restore(stage);
+    }
+
+    /**
+     * Returns whether checkpoint can be captured for given player: all actor images loaded and no stage children
+     * other than actors and speak views (explode fragments and such can't be recreated).
+     */
+    public static boolean canCapture(PlayerView aPlayer)
+    {
+        // If any actor image not loaded, return false
+        StageView stage = aPlayer.getStage();
+        for (Actor actor : stage._actors.values()) {
+            Image img = actor.getImage();
+            if (img != null && !img.isLoaded())
+                return false;
+        }
+
+        // If any stage child that isn't actor or speak view, return false
+        for (View child : stage.getChildren())
+            if (!(child instanceof Actor) && !(child instanceof SpeakView))
+                return false;
+        return true;
+    }
+
+    /**
+     * A class to hold the state of an actor.
+     */
+    private static class ActorState {
+
+        // The actor
+        Actor  _actor;
+
+        // Whether actor is visible, flipped and painted flipped
+        boolean  _visible, _flipX, _paintFlipX;
+
+        // The asset of image, frame and offset
+        Asset  _imageAsset;
+        int  _frame;
+        double  _offsetX;
+
+        // The bounds and transform
+        double  _x, _y, _width, _height;
+        double  _transX, _transY, _rotate, _scaleX, _scaleY;
+
+        // The opacity
+        double  _opacity;
+
+        /**
+         * Constructor to capture state of given actor.
+         */
+        ActorState(Actor anActor)
+        {
+            _actor = anActor;
+            _visible = anActor.isVisible();
+            _flipX = anActor.isFlipX();
+            _paintFlipX = anActor._paintFlipX;
+            _imageAsset = anActor.getImageAsset();
+            _frame = anActor.getFrame();
+            _offsetX = anActor._offsetX;
+            _x = anActor.getX();
+            _y = anActor.getY();
+            _width = anActor.getWidth();
+            _height = anActor.getHeight();
+            _transX = anActor.getTransX();
+            _transY = anActor.getTransY();
+            _rotate = anActor.getRotate();
+            _scaleX = anActor.getScaleX();
+            _scaleY = anActor.getScaleY();
+            _opacity = anActor.getOpacity();
+        }
+
+        /**
+         * Restores state of actor.
+         */
+        void restore()
+        {
+            _actor.setVisible(_visible);
+            _actor.setFlipX(_flipX);
+            _actor._paintFlipX = _paintFlipX;
+            _actor.setImageForAsset(_imageAsset);
+            _actor.setFrame(_frame);
+            _actor._offsetX = _offsetX;
+            _actor.setBounds(_x, _y, _width, _height);
+            _actor.setTransX(_transX);
+            _actor.setTransY(_transY);
+            _actor.setRotate(_rotate);
+            _actor.setScaleX(_scaleX);
+            _actor.setScaleY(_scaleY);
+            _actor.setOpacity(_opacity);
+        }
+    }
+
+    /**
+     * A class to hold the state of a speak view.
+     */
+    private static class SpeakState {
+
+        // The text, bubble bounds, tail angle and length
+        String  _text;
+        Rect  _bubbleBnds;
+        double  _tailAngle, _tailLen;
+
+        // The opacity
+        double  _opacity;
+
+        /**
+         * Constructor to capture state of given speak view.
+         */
+        SpeakState(SpeakView aSpeakView)
+        {
+            _text = aSpeakView.getText();
+            _bubbleBnds = aSpeakView.getBubbleBounds();
+            _tailAngle = aSpeakView.getTailAngle();
+            _tailLen = aSpeakView.getTailLength();
+            _opacity = aSpeakView.getOpacity();
+        }
+
+        /**
+         * Creates speak view for state and adds to stage.
+         */
+        void restore(StageView aStage)
+        {
+            SpeakView speakView = new SpeakView();
+            speakView.setText(_text);
+            speakView.setBubbleBounds(_bubbleBnds);
+            speakView.setTailLength(_tailLen);
+            speakView.setTailAngle(_tailAngle);
+            speakView.setOpacity(_opacity);
+            aStage.addChild(speakView);
+        }
+    }
+}
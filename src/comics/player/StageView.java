@@ -14,12 +14,24 @@ public class StageView extends ChildView implements Star {
     // The background image
     Image  _backImg;
 
+    // The setting asset of background image
+    Asset  _backAsset;
+
     // The actors currently used by script
     Map<String, Actor>  _actors = new HashMap();
 
+    // The assets held by player checkpoints (kept loaded along with assets shown)
+    Set<Asset>  _checkpointAssets = Collections.emptySet();
+
     // The list of setting names
     String[]  _setNames;
 
+    // The asset index
+    AssetIndex  _assetIndex = AssetIndex.get();
+
+    // Constants for properties
+    public static final String AssetIndex_Prop = "AssetIndex";
+
     /**
      * Creates a StageView.
      */
@@ -32,6 +44,49 @@ public class StageView extends ChildView implements Star {
         setFocusWhenPressed(false); // Only need this because SnapScene superclass sets
     }
 
+    /**
+     * Returns the asset index.
+     */
+    public AssetIndex getAssetIndex()  { return _assetIndex; }
+
+    /**
+     * Sets the asset index (so players can use their own index instead of the shared one).
+     */
+    public void setAssetIndex(AssetIndex anIndex)
+    {
+        if (anIndex == _assetIndex) return;
+        _setNames = null;
+        _assetIndex.getImageCache().setAssetsInUse(this, null);
+        firePropChange(AssetIndex_Prop, _assetIndex, _assetIndex = anIndex);
+        assetsInUseChanged();
+    }
+
+    /**
+     * Sets the assets held by player checkpoints (so image cache doesn't release their images).
+     */
+    public void setCheckpointAssets(Set<Asset> theAssets)
+    {
+        _checkpointAssets = theAssets;
+        assetsInUseChanged();
+    }
+
+    /**
+     * Called on stage thread when shown assets change to give image cache a snapshot of assets in use (setting, actors
+     * and checkpoints), so cache never reads stage state from other threads.
+     */
+    protected void assetsInUseChanged()
+    {
+        Set<Asset> assets = new HashSet<>(_checkpointAssets);
+        if (_backAsset != null)
+            assets.add(_backAsset);
+        for (Actor actor : _actors.values()) {
+            assets.add(actor.getAsset());
+            if (actor.getImageAsset() != null)
+                assets.add(actor.getImageAsset());
+        }
+        _assetIndex.getImageCache().setAssetsInUse(this, assets);
+    }
+
     /**
      * Returns the star name.
      */
@@ -65,9 +120,13 @@ public class StageView extends ChildView implements Star {
 
         List<String> sets = new ArrayList();
         sets.add("Blank");
-        for (Asset.SetImage set : AssetIndex.get()._sets)
-            sets.add(set.getName());
-        return _setNames = sets.toArray(new String[sets.size()]);
+        sets.addAll(_assetIndex.getSetNames());
+        String[] setNames = sets.toArray(new String[sets.size()]);
+
+        // Only cache once asset index is loaded
+        if (_assetIndex.isLoaded())
+            _setNames = setNames;
+        return setNames;
     }
 
     /**
@@ -87,7 +146,7 @@ public class StageView extends ChildView implements Star {
     {
         // Get image for word
         String sname = aScriptLine.getStarName();
-        Asset asset = AssetIndex.get().getActorAsset(sname);
+        Asset asset = _assetIndex.getActorAsset(sname);
         if (asset == null)
             return null;
 
@@ -102,6 +161,7 @@ public class StageView extends ChildView implements Star {
             actor = new Actor(aScriptLine.getScript(), asset);
             _actors.put(name, actor);
             addChild(actor);
+            assetsInUseChanged();
         }
 
         // Return actor
@@ -127,6 +187,24 @@ public class StageView extends ChildView implements Star {
         if (_backImg != null && !_backImg.isLoaded()) _backImg.addLoadListener(() -> repaint());
     }
 
+    /**
+     * Returns the setting asset of background image.
+     */
+    public Asset getBackAsset()
+    {
+        return _backAsset;
+    }
+
+    /**
+     * Sets the background image from given setting asset (or null).
+     */
+    public void setBackAsset(Asset anAsset)
+    {
+        _backAsset = anAsset;
+        setBackImage(anAsset != null ? anAsset.getImage() : null);
+        assetsInUseChanged();
+    }
+
     /**
      * Override to paint image.
      */
@@ -142,7 +220,7 @@ public class StageView extends ChildView implements Star {
      */
     public void resetStar()
     {
-        setBackImage(null); //getAnimCleared(0);
+        setBackAsset(null); //getAnimCleared(0);
         for (Actor actor : _actors.values())
             actor.resetStar();
     }
@@ -167,6 +245,12 @@ public class StageView extends ChildView implements Star {
      */
     public class BackImageAction extends Action {
 
+        // The setting asset
+        Asset  _asset;
+
+        // Whether setting asset has been resolved (waits for asset index to load)
+        boolean  _assetResolved;
+
         /**
          * Creates the action.
          */
@@ -181,11 +265,27 @@ public class StageView extends ChildView implements Star {
          */
         public Image getImage()
         {
-            ScriptLine line = getLine();
-            String words[] = line.getWords();
-            Asset asset = getAsset(words, 1);
-            Image img = asset != null ? asset.getImage() : null;
-            return img;
+            Asset asset = getSetAsset();
+            return asset != null ? asset.getImage() : null;
+        }
+
+        /**
+         * Returns the setting asset (null if asset index is still loading).
+         */
+        protected Asset getSetAsset()
+        {
+            if (_assetResolved || !_assetIndex.isLoaded()) return _asset;
+            _asset = getAsset(getLine().getLexer(), ScriptLexer.ACTION);
+            _assetResolved = true;
+            return _asset;
+        }
+
+        /**
+         * Override to resolve setting asset.
+         */
+        public void load()
+        {
+            getSetAsset();
         }
 
         /**
@@ -193,16 +293,28 @@ public class StageView extends ChildView implements Star {
          */
         protected Loadable getLoadable()
         {
+            // If asset index still loading, wait for it (unless setting doesn't need it)
+            if (!_assetIndex.isLoaded() && !isBlank())
+                return _assetIndex;
             return getImage();
         }
 
+        /**
+         * Returns whether setting is blank (no background image).
+         */
+        protected boolean isBlank()
+        {
+            ScriptLexer lexer = getLine().getLexer();
+            return lexer.getTokenCount() <= ScriptLexer.PREDICATE || lexer.hasToken("blank");
+        }
+
         /**
          * Runs the action.
          */
         public void run()
         {
-            Image img = getImage();
-            StageView.this.setBackImage(img);
+            Asset asset = getSetAsset();
+            StageView.this.setBackAsset(asset);
         }
 
         /**
@@ -215,13 +327,13 @@ public class StageView extends ChildView implements Star {
     }
 
     /**
-     * Returns the first SetAsset with name matching any word in given string arry.
+     * Returns the first SetAsset with name matching any token in given lexer, starting at given token index.
      */
-    static Asset getAsset(String theWords[], int aStart)
+    Asset getAsset(ScriptLexer aLexer, int aStart)
     {
-        for (int i = aStart; i < theWords.length; i++) {
-            String word = theWords[i];
-            Asset asset = AssetIndex.get().getSetAsset(word);
+        for (int i = aStart; i < aLexer.getTokenCount(); i++) {
+            String word = aLexer.getTokenString(i); // Lowercase token string is created once per line text
+            Asset asset = _assetIndex.getSetAsset(word);
             if (asset != null)
                 return asset;
         }
@@ -0,0 +1,132 @@
+package comics.player;
+import java.util.Arrays;
+
+/**
+ * A class to hold the runtimes of a sequence of lines as a Fenwick tree, to answer start/end time and
+ * line-for-time queries in log time and to update incrementally when lines change.
+ */
+public class TimeIndex {
+
+    // The runtime for each line
+    int[]  _times = new int[0];
+
+    // The Fenwick tree of runtimes (one-based)
+    int[]  _tree = new int[1];
+
+    // The number of lines
+    int  _count;
+
+    /**
+     * Constructor.
+     */
+    public TimeIndex()  { }
+
+    /**
+     * Returns the number of lines.
+     */
+    public int getCount()  { return _count; }
+
+    /**
+     * Returns the runtime of line at index.
+     */
+    public int getTime(int anIndex)
+    {
+        return anIndex >= 0 && anIndex < _count ? _times[anIndex] : 0;
+    }
+
+    /**
+     * Sets the runtime of line at index.
+     */
+    public void setTime(int anIndex, int aTime)
+    {
+        int delta = aTime - _times[anIndex];
+        if (delta == 0) return;
+        _times[anIndex] = aTime;
+        for (int i = anIndex + 1; i <= _count; i += i & -i)
+            _tree[i] += delta;
+    }
+
+    /**
+     * Sets all runtimes.
+     */
+    public void setTimes(int[] theTimes)
+    {
+        _times = theTimes;
+        _count = theTimes.length;
+        rebuild();
+    }
+
+    /**
+     * Replaces the runtimes in given range with given runtimes.
+     */
+    public void replaceTimes(int aStart, int anEnd, int[] theTimes)
+    {
+        int[] times = new int[_count - (anEnd - aStart) + theTimes.length];
+        System.arraycopy(_times, 0, times, 0, aStart);
+        System.arraycopy(theTimes, 0, times, aStart, theTimes.length);
+        System.arraycopy(_times, anEnd, times, aStart + theTimes.length, _count - anEnd);
+        setTimes(times);
+    }
+
+    /**
+     * Returns the sum of runtimes for lines before given index.
+     */
+    public int getStartTime(int anIndex)
+    {
+        int sum = 0;
+        for (int i = Math.min(anIndex, _count); i > 0; i -= i & -i)
+            sum += _tree[i];
+        return sum;
+    }
+
+    /**
+     * Returns the sum of runtimes for lines up to and including given index.
+     */
+    public int getEndTime(int anIndex)
+    {
+        return getStartTime(anIndex + 1);
+    }
+
+    /**
+     * Returns the total runtime.
+     */
+    public int getTotalTime()
+    {
+        return getStartTime(_count);
+    }
+
+    /**
+     * Returns the index of line running at given time (or last line if time is beyond end).
+     */
+    public int getIndexForTime(int aTime)
+    {
+        // Descend tree to find number of lines that end at or before given time
+        int index = 0, remain = aTime;
+        for (int step = Integer.highestOneBit(Math.max(_count, 1)); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= _count && _tree[next] <= remain) {
+                index = next;
+                remain -= _tree[next];
+            }
+        }
+
+        // Return index, clamped to last line
+        return Math.min(index, _count - 1);
+    }
+
+    /**
+     * Rebuilds the tree from runtimes in linear time.
+     */
+    protected void rebuild()
+    {
+        if (_tree.length < _count + 1)
+            _tree = new int[_times.length + 1];
+        else Arrays.fill(_tree, 0);
+        for (int i = 1; i <= _count; i++) {
+            _tree[i] += _times[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= _count)
+                _tree[parent] += _tree[i];
+        }
+    }
+}
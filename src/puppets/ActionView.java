@@ -237,6 +237,7 @@ public class ActionView extends PuppetView {
      */
     public void finishPose()
     {
-        _phys.resolveMouseJoints();
+        if (_phys != null)
+            _phys.resolveMouseJoints();
     }
 }
\ No newline at end of file
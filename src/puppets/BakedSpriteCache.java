@@ -0,0 +1,247 @@
+package puppets;
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import snap.geom.Insets;
+import snap.gfx.*;
+import snap.util.SnapEnv;
+
+/**
+ * A class to cache rendered puppet action frames on local disk as a PNG sprite strip plus metadata, so later runs can
+ * decode one image instead of posing and painting every frame. The key is a hash of everything that affects the
+ * frames: puppet parts, joints and part images, action XML, puppet height, insets, frame delay, image size and renderer.
+ */
+public class BakedSpriteCache {
+
+    // The cache directory
+    File  _dir;
+
+    // The max size of cache in bytes
+    long  _maxSize;
+
+    // The current size of cache in bytes
+    long  _size = -1;
+
+    // The number of cache hits and stores
+    AtomicInteger  _hitCount = new AtomicInteger(), _storeCount = new AtomicInteger();
+
+    // The digests of part images (so images are encoded once)
+    private static Map<Image, byte[]>  _imageDigests = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // The shared cache
+    private static BakedSpriteCache  _shared;
+
+    // Constants
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+    private static final String KEY_VERSION = "BakedSprite2";
+
+    /**
+     * Constructor for given directory and max size.
+     */
+    public BakedSpriteCache(File aDir, long aMaxSize)
+    {
+        _dir = aDir;
+        _maxSize = aMaxSize;
+    }
+
+    /**
+     * Returns the cache directory.
+     */
+    public File getDir()  { return _dir; }
+
+    /**
+     * Returns the number of frame strips read from cache.
+     */
+    public int getHitCount()  { return _hitCount.get(); }
+
+    /**
+     * Returns the number of frame strips written to cache.
+     */
+    public int getStoreCount()  { return _storeCount.get(); }
+
+    /**
+     * Returns the cached strip image for given key and frame count, or null if not cached.
+     */
+    public Image getStrip(String aKey, int aFrameCount)
+    {
+        File stripFile = new File(_dir, aKey + ".png");
+        File metaFile = new File(_dir, aKey + ".meta");
+        if (!stripFile.exists() || !metaFile.exists()) return null;
+
+        try {
+            // Read metadata and check frame count
+            Properties meta = new Properties();
+            try (InputStream in = new FileInputStream(metaFile)) { meta.load(in); }
+            if (Integer.parseInt(meta.getProperty("FrameCount", "0")) != aFrameCount) return null;
+
+            // Read strip image and mark recently used
+            byte[] bytes = Files.readAllBytes(stripFile.toPath());
+            stripFile.setLastModified(System.currentTimeMillis());
+            Image strip = Image.getImageForSource(bytes);
+            if (strip == null || !strip.isLoaded()) return null;
+            _hitCount.incrementAndGet();
+            return strip;
+        }
+
+        catch (Exception e) {
+            System.err.println("BakedSpriteCache.getStrip: Error reading " + stripFile + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes given frames as strip image for given key.
+     */
+    public void putStrip(String aKey, ImageSet theFrames)
+    {
+        try {
+            // Get strip bytes and metadata
+            byte[] bytes = theFrames.getSpriteSheetImage().getBytesPNG();
+            Image frame = theFrames.getImage(0);
+            Properties meta = new Properties();
+            meta.setProperty("FrameCount", String.valueOf(theFrames.getImages().size()));
+            meta.setProperty("FramePixWidth", String.valueOf((int) frame.getPixWidth()));
+            meta.setProperty("FramePixHeight", String.valueOf((int) frame.getPixHeight()));
+
+            // Write metadata, then strip (each to temp file and moved into place), so a strip never appears without
+            // complete metadata (readers need both)
+            _dir.mkdirs();
+            getSize(); // Make sure size is calculated before write
+            File stripFile = new File(_dir, aKey + ".png");
+            long oldSize = stripFile.exists() ? stripFile.length() : 0;
+            Path metaTemp = Files.createTempFile(_dir.toPath(), "tmp", ".part");
+            try (OutputStream out = Files.newOutputStream(metaTemp)) { meta.store(out, null); }
+            Files.move(metaTemp, new File(_dir, aKey + ".meta").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Path temp = Files.createTempFile(_dir.toPath(), "tmp", ".part");
+            Files.write(temp, bytes);
+            Files.move(temp, stripFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            _storeCount.incrementAndGet();
+
+            // Update size and evict
+            synchronized (this) {
+                _size = _size - oldSize + bytes.length;
+                if (_size > _maxSize)
+                    evict(stripFile);
+            }
+        }
+
+        catch (Exception e) { System.err.println("BakedSpriteCache.putStrip: Error writing " + aKey + ": " + e); }
+    }
+
+    /**
+     * Returns the current size of cache in bytes.
+     */
+    public synchronized long getSize()
+    {
+        if (_size >= 0) return _size;
+        long size = 0;
+        File[] files = _dir.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files != null) for (File file : files) size += file.length();
+        return _size = size;
+    }
+
+    /**
+     * Deletes least recently used strips until cache is under max size (keeping given file).
+     */
+    private void evict(File aKeepFile)
+    {
+        File[] files = _dir.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (_size <= _maxSize) break;
+            if (file.equals(aKeepFile)) continue;
+            long length = file.length();
+            String name = file.getName();
+            if (file.delete()) {
+                new File(_dir, name.substring(0, name.length() - 4) + ".meta").delete();
+                _size -= length;
+            }
+        }
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public synchronized void clear()
+    {
+        File[] files = _dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        _size = 0;
+    }
+
+    /**
+     * Returns the cache key (hex SHA-1) for given puppet, action and render settings (puppet must be loaded).
+     */
+    public static String getKey(Puppet aPuppet, PuppetAction anAction, double aPuppetHeight, Insets theIns, int aFrameDelay,
+                                Image anImage, boolean isDirect)
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            // Add version, render settings and image size
+            String settings = KEY_VERSION + ' ' + aPuppetHeight + ' ' + theIns.top + ' ' + theIns.right + ' ' +
+                theIns.bottom + ' ' + theIns.left + ' ' + aFrameDelay + ' ' + anImage.getPixWidth() + 'x' + anImage.getPixHeight() + (isDirect ? " Direct" : " Physics");
+            digest.update(settings.getBytes("UTF-8"));
+
+            // Add puppet parts and joints
+            StringBuilder sb = new StringBuilder(String.valueOf(aPuppet.getName()));
+            for (PuppetPart part : aPuppet.getPartsPaintOrder())
+                if (part != null)
+                    sb.append('|').append(part.getName()).append(' ').append(part.getX()).append(' ').append(part.getY())
+                        .append(' ').append(part.getWidth()).append(' ').append(part.getHeight());
+            for (PuppetJoint joint : aPuppet.getJoints())
+                if (joint != null)
+                    sb.append('|').append(joint.getName()).append(' ').append(joint.getX()).append(' ').append(joint.getY());
+            digest.update(sb.toString().getBytes("UTF-8"));
+
+            // Add part images (derived parts are cropped from mother parts)
+            for (PuppetPart part : aPuppet.getMotherParts())
+                digest.update(getImageDigest(part.getImage()));
+
+            // Add action
+            digest.update(anAction.toXML().getBytes("UTF-8"));
+
+            // Return hex string
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+        catch (Exception e) { throw new RuntimeException(e); }
+    }
+
+    /**
+     * Returns the digest of given image pixels (as PNG bytes).
+     */
+    private static byte[] getImageDigest(Image anImage) throws Exception
+    {
+        if (anImage == null) return new byte[0];
+        byte[] imageDigest = _imageDigests.get(anImage);
+        if (imageDigest == null) {
+            imageDigest = MessageDigest.getInstance("SHA-1").digest(anImage.getBytesPNG());
+            _imageDigests.put(anImage, imageDigest);
+        }
+        return imageDigest;
+    }
+
+    /**
+     * Returns the shared cache (null if disabled or in browser).
+     */
+    public static synchronized BakedSpriteCache getShared()
+    {
+        if (_shared != null || SnapEnv.isTeaVM || Boolean.getBoolean("comics.spriteCache.disabled")) return _shared;
+        String dirPath = System.getProperty("comics.spriteCache.dir", System.getProperty("user.home") + "/.comicscript/sprites");
+        long maxSize = Long.getLong("comics.spriteCache.maxSize", DEFAULT_MAX_SIZE);
+        return _shared = new BakedSpriteCache(new File(dirPath), maxSize);
+    }
+
+    /**
+     * Sets the shared cache (null resets to default).
+     */
+    public static synchronized void setShared(BakedSpriteCache aCache)
+    {
+        _shared = aCache;
+    }
+}
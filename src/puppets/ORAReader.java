@@ -125,7 +125,7 @@ public class ORAReader {
         public Image getImage()
         {
             if (_image != null) return _image;
-            return _image = Image.getImageForSource(src);
+            return _image = WebCache.getImageForSource(src);
         }
 
         /**
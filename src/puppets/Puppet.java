@@ -1,6 +1,7 @@
 package puppets;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import snap.geom.Point;
 import snap.geom.Rect;
 import snap.util.*;
@@ -38,6 +39,9 @@ public class Puppet {
     // The bounds of joints
     private Rect _jntBnds;
 
+    // The future completed when part images are loaded
+    private CompletableFuture<Puppet> _loadFuture;
+
     /**
      * Constructor.
      */
@@ -423,7 +427,29 @@ public class Puppet {
      */
     public void addLoadListener(Runnable aRun)
     {
-        getLoadable().addLoadListener(aRun);
+        getLoadFuture().thenRun(aRun);
+    }
+
+    /**
+     * Returns a future that completes (with this puppet) when all part images are loaded and decoded.
+     */
+    public synchronized CompletableFuture<Puppet> getLoadFuture()
+    {
+        // If already set, just return
+        if (_loadFuture != null) return _loadFuture;
+
+        // Create future and complete when parts loadable is loaded
+        CompletableFuture<Puppet> loadFuture = _loadFuture = new CompletableFuture<>();
+        Loadable ldb = getLoadable();
+        if (ldb != null && !ldb.isLoaded()) {
+            ldb.addLoadListener(() -> loadFuture.complete(this));
+            if (!ldb.isLoaded()) // In case loaded before listener was added
+                return loadFuture;
+        }
+
+        // Complete and return
+        loadFuture.complete(this);
+        return loadFuture;
     }
 
     /**
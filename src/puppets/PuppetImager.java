@@ -1,11 +1,21 @@
 package puppets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import snap.geom.Insets;
+import snap.geom.Size;
 import snap.gfx.*;
 import snap.view.*;
 
 /**
- * A class to render puppet images.
+ * A class to render puppet images. Frames are rendered on a shared pool of workers (one per core), so different
+ * imagers render in parallel. Work is taken in priority order. Frames are rendered by posing a worker's own ActionView
+ * with physics (all frames of one action in one task, since each pose settles from the previous one), so they match
+ * the editor and live previews. Offline baking can opt in to DirectRender (-Dcomics.puppetImager.direct=true or
+ * setDirectRender()), where frames are painted directly by a PuppetPainter and frames of one action are split across
+ * workers.
+ * Rendered frames are saved to the BakedSpriteCache, so later runs just decode a strip image.
  */
 public class PuppetImager {
 
@@ -16,7 +26,7 @@ public class PuppetImager {
     Image _image;
 
     // The images
-    List<Image> _images;
+    Image[] _images;
 
     // The Puppet
     Puppet _puppet;
@@ -24,43 +34,88 @@ public class PuppetImager {
     // The Action
     PuppetAction _action;
 
-    // The ActionView
-    ActionView _actView;
+    // The puppet height in view
+    double _puppetHeight;
 
-    // A list of PuppetImagers
-    private static List<PuppetImager> _imagers = new ArrayList<>();
+    // The view insets
+    Insets _insets;
 
-    // The thread to process imagers
-    private static Thread _imagerThread;
+    // The priority
+    int _priority;
+
+    // The order this imager was created (so imagers of same priority render first come, first served)
+    long _order;
+
+    // The frame tasks
+    List<FrameTask> _tasks = new ArrayList<>();
+
+    // The number of frame tasks not yet finished
+    AtomicInteger _tasksLeft;
+
+    // Whether any frame task failed (so frames aren't saved to baked sprite cache)
+    volatile boolean _taskFailed;
+
+    // The key of frames in baked sprite cache (null if cache not used)
+    String _bakeKey;
+
+    // The PuppetPainter to paint frames directly (null if rendering with ActionView physics)
+    PuppetPainter _puppetPainter;
+
+    // Whether frames are painted directly with PuppetPainter
+    boolean _direct = _directRender;
+
+    // The queue of frame tasks
+    private static PriorityBlockingQueue<FrameTask> _queue;
+
+    // The worker count
+    private static int _workerCount;
+
+    // The order counter for imagers
+    private static long _orderCounter;
+
+    // Whether to paint frames directly with PuppetPainter instead of posing an ActionView with physics (opt-in for baking)
+    private static volatile boolean _directRender = Boolean.getBoolean("comics.puppetImager.direct");
+
+    // Constants for priority (lower values render first)
+    public static final int PRIORITY_PLAYING = 0;
+    public static final int PRIORITY_PREFETCH = 1;
+    public static final int PRIORITY_IDLE = 2;
+
+    // Constants
+    public static final int FRAME_DELAY_MILLIS = 25;
+    private static final double PUPPET_HEIGHT = 400;
+    private static final int MIN_FRAMES_PER_TASK = 10;
 
     /**
      * Constructor.
      */
     public PuppetImager(Puppet aPuppet, PuppetAction anAction, double aScale, Insets theIns)
+    {
+        this(aPuppet, anAction, aScale, theIns, PRIORITY_PREFETCH);
+    }
+
+    /**
+     * Constructor with priority.
+     */
+    public PuppetImager(Puppet aPuppet, PuppetAction anAction, double aScale, Insets theIns, int aPriority)
     {
         _puppet = aPuppet;
         _action = anAction;
-
-        // Create action view
-        _actView = new ActionView(aPuppet);
-        _actView.setFill(null);
-        _actView.setBorder(null);
-        if (theIns == null) theIns = Insets.EMPTY;
-        _actView.setPadding(theIns);
-        _actView.setPuppetHeight(400);
-        _actView.setPuppet(aPuppet);
-        _actView.setPoseSmoothly(false);
+        _puppetHeight = PUPPET_HEIGHT * aScale;
+        _insets = theIns != null ? theIns : Insets.EMPTY;
+        _priority = aPriority;
 
         // Get the frame count
-        int FRAME_DELAY_MILLIS = 25;
         _frameCount = anAction.getMaxTime() / FRAME_DELAY_MILLIS + 1;
+        _images = new Image[_frameCount];
 
         // Create first image (empty)
-        double vw = _actView.getWidth();
-        double vh = _actView.getHeight();
-        _image = Image.getImageForSizeAndDpiScale(vw, vh, true, 0);
+        Size size = PuppetView.getPrefSizeForPuppet(aPuppet, _puppetHeight, _insets);
+        _image = Image.getImageForSizeAndDpiScale(size.width, size.height, true, 0);
         _image.setLoaded(false);
-        addImager(this);
+
+        // When all puppet part images are decoded, load frames from cache or queue frame tasks
+        aPuppet.getLoadFuture().thenRun(this::loadFramesFromCacheOrQueueTasks);
     }
 
     /**
@@ -74,45 +129,149 @@ public class PuppetImager {
     public int getFrameCount()  { return _frameCount; }
 
     /**
-     * Loads the images.
+     * Returns the priority.
+     */
+    public int getPriority()  { return _priority; }
+
+    /**
+     * Returns whether frames are painted directly with PuppetPainter instead of posing an ActionView with physics.
      */
-    private void loadImages()
+    public static boolean isDirectRender()  { return _directRender; }
+
+    /**
+     * Sets whether frames are painted directly with PuppetPainter instead of posing an ActionView with physics. Only
+     * affects imagers created after call, and is meant for offline baking (previews should keep physics poses).
+     */
+    public static void setDirectRender(boolean aValue)  { _directRender = aValue; }
+
+    /**
+     * Sets the priority (re-queues frame tasks not yet started).
+     */
+    public void setPriority(int aValue)
     {
-        Puppet puppet = _actView.getPuppet();
-        while (!puppet.isLoaded()) {
-            System.out.println("Puppet not loaded: " + puppet.getName() + " (doing yield)");
-            Thread.yield();
+        synchronized (PuppetImager.class) {
+
+            // If already set, just return
+            if (aValue == _priority) return;
+
+            // Remove waiting tasks, set priority and add back (so queue order is updated)
+            List<FrameTask> waitingTasks = new ArrayList<>();
+            for (FrameTask task : _tasks)
+                if (getQueue().remove(task))
+                    waitingTasks.add(task);
+            _priority = aValue;
+            getQueue().addAll(waitingTasks);
         }
-        System.out.println("PuppetImager: Loading images for " + puppet.getName() + " " + _action.getName());
-
-        // Create list of images and fill with empty images
-        _images = new ArrayList<>(_frameCount);
-        _images.add(_image);
-        double imageW = _image.getWidth();
-        double imageH = _image.getHeight();
-        for (int i = 1; i < _frameCount; i++) {
-            Image img = Image.getImageForSizeAndDpiScale(imageW, imageH, true, 0);
-            _images.add(img);
+    }
+
+    /**
+     * Loads frames from baked sprite cache (off caller thread) or, if not cached, queues frame tasks to render them.
+     */
+    private void loadFramesFromCacheOrQueueTasks()
+    {
+        // If no cache, just queue tasks
+        BakedSpriteCache cache = BakedSpriteCache.getShared();
+        if (cache == null) {
+            queueTasks();
+            return;
         }
 
-        // Set initial action
-        _actView.setPosable(true);
-        _actView.setAction(_action);
+        // Get key and cached strip in background (key hashes part images)
+        CompletableFuture.runAsync(() -> {
+            _bakeKey = BakedSpriteCache.getKey(_puppet, _action, _puppetHeight, _insets, FRAME_DELAY_MILLIS, _image, _direct);
+            Image strip = cache.getStrip(_bakeKey, _frameCount);
+            if (strip != null)
+                setFramesForStrip(strip);
+            else queueTasks();
+        }).exceptionally(e -> {
+            System.err.println("PuppetImager: Error reading baked sprite cache: " + e);
+            _bakeKey = null;
+            queueTasks();
+            return null;
+        });
+    }
 
-        // Iterate over frames, set action pose and paint view into frame image
+    /**
+     * Sets frames by painting each frame of given strip image.
+     */
+    private void setFramesForStrip(Image aStrip)
+    {
+        System.out.println("PuppetImager: Loaded cached images for " + _puppet.getName() + " " + _action.getName());
+
+        // Iterate over frames and paint strip frame into frame image
+        double frameW = aStrip.getPixWidth() / (double) _frameCount;
+        double frameH = aStrip.getPixHeight();
         for (int i = 0; i < _frameCount; i++) {
-            Image img = _images.get(i);
-            _actView.setActionTime(i * 25);
-            _actView.finishPose();
-            paintViewInImage(_actView, img);
-            Thread.yield();
+            Image img = i == 0 ? _image : Image.getImageForSizeAndDpiScale(_image.getWidth(), _image.getHeight(), true, 0);
+            Painter pntr = img.getPainter();
+            pntr.drawImage(aStrip, i * frameW, 0, frameW, frameH, 0, 0, img.getWidth(), img.getHeight());
+            _images[i] = img;
         }
 
         // Create ImageSet and set image loaded
-        new ImageSet(_images);
+        new ImageSet(Arrays.asList(_images));
         _image.setLoaded(true);
     }
 
+    /**
+     * Splits frames into tasks (one per worker, within reason, if painting directly, otherwise one) and adds them to
+     * queue.
+     */
+    private void queueTasks()
+    {
+        System.out.println("PuppetImager: Loading images for " + _puppet.getName() + " " + _action.getName());
+
+        // If painting directly, create PuppetPainter (shared by frame tasks)
+        if (_direct)
+            _puppetPainter = new PuppetPainter(_puppet, _puppetHeight, _insets);
+
+        synchronized (PuppetImager.class) {
+
+            // Get task count and frames per task (physics poses depend on all previous frames, so can't be split)
+            int taskCount = _direct ? Math.max(Math.min(getQueueWorkerCount(), _frameCount / MIN_FRAMES_PER_TASK), 1) : 1;
+            int framesPerTask = (_frameCount + taskCount - 1) / taskCount;
+
+            // Create tasks
+            for (int start = 0; start < _frameCount; start += framesPerTask)
+                _tasks.add(new FrameTask(start, Math.min(start + framesPerTask, _frameCount)));
+            _tasksLeft = new AtomicInteger(_tasks.size());
+
+            // Add to queue
+            _order = _orderCounter++;
+            getQueue().addAll(_tasks);
+        }
+    }
+
+    /**
+     * Called when a frame task is finished to create ImageSet and set image loaded when all are done (and save frames
+     * to baked sprite cache if no task failed).
+     */
+    private void taskFinished()
+    {
+        // If tasks left, just return
+        if (_tasksLeft.decrementAndGet() > 0) return;
+
+        // Replace any failed frames with empty images
+        for (int i = 0; i < _frameCount; i++)
+            if (_images[i] == null)
+                _images[i] = Image.getImageForSizeAndDpiScale(_image.getWidth(), _image.getHeight(), true, 0);
+
+        // Create ImageSet and set image loaded
+        ImageSet imageSet = new ImageSet(Arrays.asList(_images));
+        _image.setLoaded(true);
+
+        // If any task failed, don't save blank frames to baked sprite cache (so next run renders again)
+        if (_taskFailed) {
+            System.err.println("PuppetImager: Not caching failed images for " + _puppet.getName() + " " + _action.getName());
+            return;
+        }
+
+        // Save frames to baked sprite cache
+        BakedSpriteCache cache = BakedSpriteCache.getShared();
+        if (cache != null && _bakeKey != null)
+            cache.putStrip(_bakeKey, imageSet);
+    }
+
     /**
      * Returns an image for a View (1 = 72 dpi, 2 = 144 dpi, 0 = device dpi).
      */
@@ -123,57 +282,158 @@ public class PuppetImager {
     }
 
     /**
-     * Adds a puppet imager.
+     * Returns the queue of frame tasks (starting workers).
      */
-    private static synchronized void addImager(PuppetImager aPI)
+    private static synchronized PriorityBlockingQueue<FrameTask> getQueue()
     {
-        _imagers.add(aPI);
+        if (_queue != null) return _queue;
 
-        if (_imagers.size() == 1)
-            startImagerThread();
+        // Create queue and start a worker for each core
+        _queue = new PriorityBlockingQueue<>();
+        _workerCount = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < _workerCount; i++)
+            new Worker(i).start();
+        return _queue;
     }
 
     /**
-     * Returns a puppet imager.
+     * Returns the number of workers processing queue.
      */
-    private static synchronized PuppetImager getImager()
+    private static synchronized int getQueueWorkerCount()
     {
-        if (_imagers.isEmpty()) return null;
-        PuppetImager pi = _imagers.get(0);
-        return pi;
+        getQueue();
+        return _workerCount;
     }
 
     /**
-     * Removes a puppet imager.
+     * A task to render a range of frames.
      */
-    private static synchronized void removeImager()
-    {
-        if (_imagers.isEmpty()) return;
-        _imagers.remove(0);
+    private class FrameTask implements Comparable<FrameTask> {
+
+        // The start frame (inclusive) and end frame (exclusive)
+        int _start, _end;
+
+        /**
+         * Constructor.
+         */
+        FrameTask(int aStart, int anEnd)
+        {
+            _start = aStart;
+            _end = anEnd;
+        }
+
+        /**
+         * Renders frames with PuppetPainter or given worker ActionView.
+         */
+        void run(Worker aWorker)
+        {
+            // If PuppetPainter, just paint frames directly
+            if (_puppetPainter != null) {
+                for (int i = _start; i < _end; i++) {
+                    Image img = i == 0 ? _image : Image.getImageForSizeAndDpiScale(_image.getWidth(), _image.getHeight(), true, 0);
+                    _puppetPainter.paintActionTime(img.getPainter(), _action, i * FRAME_DELAY_MILLIS);
+                    _images[i] = img;
+                }
+                return;
+            }
+
+            // Set action (physics tasks always cover all frames, so poses settle in sequence)
+            ActionView actView = aWorker.getActionView(PuppetImager.this);
+            actView.setAction(_action);
+
+            // Iterate over frames, set action pose and paint view into frame image
+            for (int i = _start; i < _end; i++) {
+                Image img = i == 0 ? _image : Image.getImageForSizeAndDpiScale(_image.getWidth(), _image.getHeight(), true, 0);
+                actView.setActionTime(i * FRAME_DELAY_MILLIS);
+                actView.finishPose();
+                paintViewInImage(actView, img);
+                _images[i] = img;
+            }
+        }
+
+        /**
+         * Compares by imager priority, then imager order, then start frame.
+         */
+        public int compareTo(FrameTask aTask)
+        {
+            PuppetImager other = aTask.getImager();
+            if (_priority != other._priority) return Integer.compare(_priority, other._priority);
+            if (_order != other._order) return Long.compare(_order, other._order);
+            return Integer.compare(_start, aTask._start);
+        }
+
+        /**
+         * Returns the imager.
+         */
+        PuppetImager getImager()  { return PuppetImager.this; }
     }
 
     /**
-     * Starts the Imager thread.
+     * A worker thread to take frame tasks from queue and render them with its own ActionView.
      */
-    private static void startImagerThread()
-    {
-        System.out.println("Starting ImagerThread");
-        _imagerThread = new Thread(() -> processImagers());
-        _imagerThread.start();
-    }
+    private static class Worker extends Thread {
 
-    private static void processImagers()
-    {
-        while (!_imagers.isEmpty()) {
-            PuppetImager pi = getImager();
-            if (pi == null) break;
-            if (!pi._puppet.isLoaded()) {
-                pi._puppet.addLoadListener(() -> startImagerThread());
-                break;
+        // The ActionView
+        ActionView _actView;
+
+        // The puppet height and insets the ActionView is configured for
+        double _puppetHeight;
+        Insets _insets;
+
+        /**
+         * Constructor.
+         */
+        Worker(int anIndex)
+        {
+            super("PuppetImager-" + anIndex);
+            setDaemon(true);
+        }
+
+        /**
+         * Takes frame tasks from queue and renders them.
+         */
+        public void run()
+        {
+            while (true) {
+                FrameTask task;
+                try { task = _queue.take(); }
+                catch (InterruptedException e) { return; }
+
+                // Render task frames
+                PuppetImager imager = task.getImager();
+                try { task.run(this); }
+                catch (Exception e) {
+                    System.err.println("PuppetImager: Error rendering " + imager._puppet.getName() + " " + imager._action.getName() + ": " + e);
+                    imager._taskFailed = true;
+                    _actView = null;
+                }
+                imager.taskFinished();
             }
-            pi.loadImages();
-            removeImager();
         }
-        _imagerThread = null;
+
+        /**
+         * Returns the ActionView configured for given imager (creating new one if puppet or size changed).
+         */
+        ActionView getActionView(PuppetImager anImager)
+        {
+            // If ActionView already configured for imager puppet and size, just return
+            if (_actView != null && _actView.getPuppet() == anImager._puppet && _puppetHeight == anImager._puppetHeight &&
+                Objects.equals(_insets, anImager._insets))
+                return _actView;
+
+            // Create and configure action view
+            ActionView actView = new ActionView(anImager._puppet);
+            actView.setFill(null);
+            actView.setBorder(null);
+            actView.setPadding(anImager._insets);
+            actView.setPuppetHeight(anImager._puppetHeight);
+            actView.setPoseSmoothly(false);
+            actView.setPosable(true);
+
+            // Set and return
+            _puppetHeight = anImager._puppetHeight;
+            _insets = anImager._insets;
+            return _actView = actView;
+        }
     }
-}
\ No newline at end of file
+}
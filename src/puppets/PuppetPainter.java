@@ -0,0 +1,93 @@
+package puppets;
+import snap.geom.*;
+import snap.gfx.*;
+
+/**
+ * A class to paint a posed puppet straight to a Painter, without a View tree or physics world. Parts are placed by
+ * PuppetPoseSolver.
+ */
+public class PuppetPainter {
+
+    // The puppet
+    private Puppet _puppet;
+
+    // The view size
+    private Size _size;
+
+    // The pose solver
+    private PuppetPoseSolver _solver;
+
+    // The parts in paint order
+    private PuppetPart[] _parts;
+
+    // The part bounds in view coords (at rest)
+    private Rect[] _partBounds;
+
+    /**
+     * Constructor for given puppet, puppet height and insets (puppet should be loaded).
+     */
+    public PuppetPainter(Puppet aPuppet, double aPuppetHeight, Insets theIns)
+    {
+        _puppet = aPuppet;
+        double scale = PuppetView.getScaleForPuppetHeight(aPuppetHeight);
+        _size = PuppetView.getPrefSizeForPuppet(aPuppet, aPuppetHeight, theIns);
+        _solver = new PuppetPoseSolver(aPuppet, scale, theIns);
+        Transform puppetToLocal = PuppetView.getPuppetToLocal(aPuppet, scale, theIns);
+
+        // Get parts with bounds in view
+        _parts = aPuppet.getPartsPaintOrder();
+        _partBounds = new Rect[_parts.length];
+        for (int i = 0; i < _parts.length; i++)
+            if (_parts[i] != null)
+                _partBounds[i] = _parts[i].getBounds().copyForTransform(puppetToLocal).getBounds();
+
+        // Make sure part images are fetched here (not concurrently when painting)
+        for (PuppetPart part : _parts)
+            if (part != null) part.getImage();
+    }
+
+    /**
+     * Returns the puppet.
+     */
+    public Puppet getPuppet()  { return _puppet; }
+
+    /**
+     * Returns the view size.
+     */
+    public Size getSize()  { return _size; }
+
+    /**
+     * Paints the puppet posed for given action at given time.
+     */
+    public void paintActionTime(Painter aPntr, PuppetAction anAction, int aTime)
+    {
+        PuppetPose pose = anAction.getPoseForTime(_puppet, aTime);
+        paintPose(aPntr, pose);
+    }
+
+    /**
+     * Paints the puppet for given pose (or at rest if null).
+     */
+    public void paintPose(Painter aPntr, PuppetPose aPose)
+    {
+        // Get solved pose
+        PuppetPoseSolver.SolvedPose solved = _solver.solve(aPose);
+
+        // Iterate over parts in paint order
+        for (int i = 0; i < _parts.length; i++) {
+            PuppetPart part = _parts[i];
+            if (part == null) continue;
+
+            // Paint part image rotated about pivot and moved to target
+            PuppetPoseSolver.PartPose partPose = solved.getPartPose(part.getName());
+            Point pivot = partPose.getPivot(), target = partPose.getTarget();
+            Rect bnds = _partBounds[i];
+            aPntr.save();
+            aPntr.translate(target.x, target.y);
+            aPntr.rotate(Math.toDegrees(partPose.getAngle()));
+            aPntr.translate(-pivot.x, -pivot.y);
+            aPntr.drawImage(part.getImage(), bnds.x, bnds.y, bnds.width, bnds.height);
+            aPntr.restore();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package puppets;
+import java.util.*;
+import snap.geom.*;
+
+/**
+ * A class to place puppet parts for a pose in closed form, instead of pulling physics bodies with mouse joints until
+ * they settle. The torso gets the rotation that best fits its posed joints, limbs are solved as two-bone chains
+ * (root joint on torso, mid joint bent to the side of the posed mid joint, end joint toward its posed point) and
+ * outer parts (hands, feet, head) point at their posed end joints. All points are in view coords.
+ */
+public class PuppetPoseSolver {
+
+    // The puppet
+    private Puppet _puppet;
+
+    // The puppet to view scale
+    private double _scale;
+
+    // The joint points in view coords (at rest)
+    private Map<String, Point> _restPoints = new HashMap<>();
+
+    // The joint chains (root joint first), one for each root joint
+    private List<String[]> _chains = new ArrayList<>();
+
+    // The names of joints that link other parts to torso
+    private List<String> _torsoJoints = new ArrayList<>();
+
+    // The start and end joint names for parts by name (parts without joint chain follow torso)
+    private Map<String, String[]> _partJoints = new HashMap<>();
+
+    // The anchor point in view coords
+    private Point _anchor;
+
+    /**
+     * Constructor for given puppet, puppet to view scale and insets (puppet should be loaded).
+     */
+    public PuppetPoseSolver(Puppet aPuppet, double aScale, Insets theIns)
+    {
+        _puppet = aPuppet;
+        _scale = aScale;
+        Transform puppetToLocal = PuppetView.getPuppetToLocal(aPuppet, aScale, theIns);
+        PuppetSchema schema = aPuppet.getSchema();
+
+        // Get joint points at rest and torso joints
+        for (String jointName : schema.getJointNames()) {
+            PuppetJoint joint = aPuppet.getJointForName(jointName);
+            if (joint != null)
+                _restPoints.put(jointName, puppetToLocal.transformXY(joint.getX(), joint.getY()));
+            if (Arrays.asList(schema.getLinkNamesForJoint(jointName)).contains(PuppetSchema.Torso))
+                _torsoJoints.add(jointName);
+        }
+        _anchor = _restPoints.getOrDefault(PuppetSchema.Anchor_Joint, new Point(0, 0));
+
+        // Get joint chains from root joints
+        for (String rootName : schema.getRootJointNames()) {
+            List<String> chain = new ArrayList<>();
+            for (String name = rootName; name != null && _restPoints.containsKey(name); name = schema.getNextJointNameForName(name))
+                chain.add(name);
+            _chains.add(chain.toArray(new String[0]));
+        }
+
+        // Get start/end joints for parts
+        for (String partName : schema.getPartNames()) {
+            String endJoint = schema.getNextJointNameForName(partName);
+            String startJoint = endJoint != null ? getStartJointName(schema, endJoint) : null;
+            if (startJoint != null && _restPoints.containsKey(startJoint) && _restPoints.containsKey(endJoint))
+                _partJoints.put(partName, new String[] { startJoint, endJoint });
+        }
+    }
+
+    /**
+     * Returns the puppet.
+     */
+    public Puppet getPuppet()  { return _puppet; }
+
+    /**
+     * Returns the joint point at rest for given joint name.
+     */
+    public Point getRestPoint(String aName)  { return _restPoints.get(aName); }
+
+    /**
+     * Returns the solved pose for given action pose (or rest pose if null).
+     */
+    public SolvedPose solve(PuppetPose aPose)
+    {
+        // Get pose for puppet at view scale and the target points
+        PuppetPose pose = aPose != null ? aPose.cloneForPuppetAtScale(_puppet, _scale) : null;
+        Map<String, Point> targets = new HashMap<>();
+        for (Map.Entry<String, Point> entry : _restPoints.entrySet()) {
+            Point pnt = pose != null ? pose.getMarkerPoint(entry.getKey()) : null;
+            targets.put(entry.getKey(), pnt != null ? new Point(_anchor.x + pnt.x, _anchor.y - pnt.y) : entry.getValue());
+        }
+
+        // Fit torso: get rotation and translation that best moves rest torso joints to targets
+        SolvedPose solved = new SolvedPose();
+        Point pivot = getCentroid(_restPoints, _torsoJoints);
+        Point target = getCentroid(targets, _torsoJoints);
+        solved._torsoPose = new PartPose(pivot, target, getFitAngle(targets, pivot, target));
+        solved._points.put(PuppetSchema.Anchor_Joint, _anchor);
+
+        // Iterate over chains and solve
+        for (String[] chain : _chains) {
+            if (chain.length == 0) continue;
+
+            // Root joint moves with torso
+            Point rest0 = _restPoints.get(chain[0]);
+            solved._points.put(chain[0], solved._torsoPose.transformXY(rest0.x, rest0.y));
+
+            // If chain has mid and end joint, solve as two-bone chain
+            int index = 1;
+            if (chain.length >= 3) {
+                solveTwoBone(solved._points, targets, chain[0], chain[1], chain[2]);
+                index = 3;
+            }
+
+            // Point remaining joints toward targets with rest length
+            for (int i = index; i < chain.length; i++)
+                solveBone(solved._points, targets, chain[i - 1], chain[i]);
+        }
+
+        // Return solved pose
+        return solved;
+    }
+
+    /**
+     * Solves mid and end joints of a two-bone chain: end moves toward its target (within reach) and mid bends to the
+     * same side as its target.
+     */
+    private void solveTwoBone(Map<String, Point> thePoints, Map<String, Point> theTargets, String aRoot, String aMid, String anEnd)
+    {
+        // Get bone lengths from rest
+        double len1 = _restPoints.get(aRoot).getDistance(_restPoints.get(aMid));
+        double len2 = _restPoints.get(aMid).getDistance(_restPoints.get(anEnd));
+
+        // Get root, end target and reach distance (clamped so triangle exists)
+        Point root = thePoints.get(aRoot);
+        Point endTarget = theTargets.get(anEnd);
+        double dx = endTarget.x - root.x, dy = endTarget.y - root.y;
+        double dist = Math.sqrt(dx * dx + dy * dy);
+        double minDist = Math.abs(len1 - len2) + .001, maxDist = len1 + len2 - .001;
+        double reach = Math.max(minDist, Math.min(dist, maxDist));
+        double dirAngle = dist > 0 ? Math.atan2(dy, dx) : 0;
+
+        // Get angle at root from law of cosines
+        double cosA = (len1 * len1 + reach * reach - len2 * len2) / (2 * len1 * reach);
+        double rootAngle = Math.acos(Math.max(-1, Math.min(1, cosA)));
+
+        // Get bend side from mid target (cross product sign relative to root->end line)
+        Point midTarget = theTargets.get(aMid);
+        double cross = dx * (midTarget.y - root.y) - dy * (midTarget.x - root.x);
+        double midAngle = cross >= 0 ? dirAngle + rootAngle : dirAngle - rootAngle;
+
+        // Set mid and end points
+        thePoints.put(aMid, new Point(root.x + Math.cos(midAngle) * len1, root.y + Math.sin(midAngle) * len1));
+        thePoints.put(anEnd, new Point(root.x + Math.cos(dirAngle) * reach, root.y + Math.sin(dirAngle) * reach));
+    }
+
+    /**
+     * Solves a single bone: next joint points from solved joint toward target direction at rest length.
+     */
+    private void solveBone(Map<String, Point> thePoints, Map<String, Point> theTargets, String aJoint, String aNext)
+    {
+        double len = _restPoints.get(aJoint).getDistance(_restPoints.get(aNext));
+        Point pnt0 = thePoints.get(aJoint);
+        Point target0 = theTargets.get(aJoint), target1 = theTargets.get(aNext);
+        double angle = Math.atan2(target1.y - target0.y, target1.x - target0.x);
+        thePoints.put(aNext, new Point(pnt0.x + Math.cos(angle) * len, pnt0.y + Math.sin(angle) * len));
+    }
+
+    /**
+     * Returns the angle that best rotates rest torso joints (about pivot) onto torso targets (about target).
+     */
+    private double getFitAngle(Map<String, Point> theTargets, Point aPivot, Point aTarget)
+    {
+        double dot = 0, cross = 0;
+        for (String name : _torsoJoints) {
+            Point r = _restPoints.get(name), p = theTargets.get(name);
+            if (r == null || p == null) continue;
+            double rx = r.x - aPivot.x, ry = r.y - aPivot.y;
+            double px = p.x - aTarget.x, py = p.y - aTarget.y;
+            dot += rx * px + ry * py;
+            cross += rx * py - ry * px;
+        }
+        return Math.atan2(cross, dot);
+    }
+
+    /**
+     * Returns the centroid of given named points.
+     */
+    private static Point getCentroid(Map<String, Point> thePoints, List<String> theNames)
+    {
+        double x = 0, y = 0;
+        int count = 0;
+        for (String name : theNames) {
+            Point pnt = thePoints.get(name);
+            if (pnt == null) continue;
+            x += pnt.x;
+            y += pnt.y;
+            count++;
+        }
+        return count > 0 ? new Point(x / count, y / count) : new Point(0, 0);
+    }
+
+    /**
+     * Returns the joint name that starts the part that ends at given joint.
+     */
+    private static String getStartJointName(PuppetSchema aSchema, String anEndJoint)
+    {
+        for (String jointName : aSchema.getJointNames())
+            if (anEndJoint.equals(aSchema.getNextJointNameForName(jointName)))
+                return jointName;
+        return null;
+    }
+
+    /**
+     * A class to hold a solved pose: joint points and part placements.
+     */
+    public class SolvedPose {
+
+        // The solved joint points
+        private Map<String, Point> _points = new HashMap<>();
+
+        // The torso placement
+        private PartPose _torsoPose;
+
+        /**
+         * Returns the solved point for given joint name (rest point if not part of pose).
+         */
+        public Point getJointPoint(String aName)
+        {
+            Point pnt = _points.get(aName);
+            return pnt != null ? pnt : _restPoints.get(aName);
+        }
+
+        /**
+         * Returns the placement for given part name.
+         */
+        public PartPose getPartPose(String aName)
+        {
+            // If part has no joint chain, it follows torso
+            String[] joints = _partJoints.get(aName);
+            if (joints == null) return _torsoPose;
+
+            // Get angle that rotates rest start->end to solved start->end
+            Point r0 = _restPoints.get(joints[0]), r1 = _restPoints.get(joints[1]);
+            Point p0 = getJointPoint(joints[0]), p1 = getJointPoint(joints[1]);
+            double angle = Math.atan2(p1.y - p0.y, p1.x - p0.x) - Math.atan2(r1.y - r0.y, r1.x - r0.x);
+            return new PartPose(r0, p0, angle);
+        }
+    }
+
+    /**
+     * A class to hold placement of a part: rotation (in radians) about rest pivot point, then move to target point.
+     */
+    public static class PartPose {
+
+        // The pivot point (at rest), target point and angle
+        private Point _pivot, _target;
+        private double _angle;
+
+        /**
+         * Constructor.
+         */
+        public PartPose(Point aPivot, Point aTarget, double anAngle)
+        {
+            _pivot = aPivot;
+            _target = aTarget;
+            _angle = anAngle;
+        }
+
+        /**
+         * Returns the pivot point (at rest).
+         */
+        public Point getPivot()  { return _pivot; }
+
+        /**
+         * Returns the target point (where pivot moves to).
+         */
+        public Point getTarget()  { return _target; }
+
+        /**
+         * Returns the angle in radians.
+         */
+        public double getAngle()  { return _angle; }
+
+        /**
+         * Returns given rest point placed by this part pose.
+         */
+        public Point transformXY(double aX, double aY)
+        {
+            double cos = Math.cos(_angle), sin = Math.sin(_angle);
+            double dx = aX - _pivot.x, dy = aY - _pivot.y;
+            return new Point(_target.x + dx * cos - dy * sin, _target.y + dx * sin + dy * cos);
+        }
+    }
+}
@@ -16,12 +16,6 @@ public class PuppetUtils {
     // Constants
     public static String ROOT = "https://reportmill.com/ComicLib/";
 
-    // The PuppetFile
-    private static PuppetFile _puppetFile;
-
-    // The ActionFile
-    private static ActionFile _actionFile;
-
     // The marker image
     private static Image _markerImg, _anchorImage;
 
@@ -36,19 +30,27 @@ public class PuppetUtils {
     }
 
     /**
-     * Returns the PuppetFile.
+     * Returns the PuppetFile (created on first call, without locking later calls).
      */
-    public static PuppetFile getPuppetFile()
-    {
-        return _puppetFile != null ? _puppetFile : (_puppetFile = new PuppetFile());
+    public static PuppetFile getPuppetFile()  { return PuppetFileHolder._puppetFile; }
+
+    /**
+     * Returns the ActionFile (created on first call, without locking later calls).
+     */
+    public static ActionFile getActionFile()  { return ActionFileHolder._actionFile; }
+
+    /**
+     * A holder class to create the shared PuppetFile lazily (class init is thread-safe).
+     */
+    private static class PuppetFileHolder {
+        static final PuppetFile _puppetFile = new PuppetFile();
     }
 
     /**
-     * Returns the ActionFile.
+     * A holder class to create the shared ActionFile lazily (class init is thread-safe).
      */
-    public static ActionFile getActionFile()
-    {
-        return _actionFile != null ? _actionFile : (_actionFile = new ActionFile());
+    private static class ActionFileHolder {
+        static final ActionFile _actionFile = new ActionFile();
     }
 
     /**
@@ -113,8 +115,8 @@ public class PuppetUtils {
      */
     public static class PuppetFile {
 
-        // A List of Puppets
-        private List<PuppetEntry> _pupEnts;
+        // A List of Puppets (volatile, so reads after load don't lock)
+        private volatile List<PuppetEntry> _pupEnts;
 
         // The puppet names
         private String[] _names;
@@ -122,12 +124,19 @@ public class PuppetUtils {
         // The file path
         private String _path = ROOT + "Puppets.xml";
 
+        // The number of times puppet list has been modified (volatile, so readers compare without locking)
+        private volatile int _modCount;
+
         /**
          * Returns the list of puppet entries.
          */
         public List<PuppetEntry> getEntries()
         {
-            return _pupEnts != null ? _pupEnts : (_pupEnts = readPuppets());
+            List<PuppetEntry> pupEnts = _pupEnts;
+            if (pupEnts != null) return pupEnts;
+            synchronized (this) {
+                return _pupEnts != null ? _pupEnts : (_pupEnts = readPuppets());
+            }
         }
 
         /**
@@ -165,6 +174,11 @@ public class PuppetUtils {
             return getEntries().get(anIndex);
         }
 
+        /**
+         * Returns the number of times puppet list has been modified (so caches of lookups can be invalidated).
+         */
+        public int getModCount()  { return _modCount; }
+
         /**
          * Returns the puppet with given name.
          */
@@ -192,6 +206,7 @@ public class PuppetUtils {
             PuppetEntry pe = new PuppetEntry(aPuppet);
             getEntries().add(anIndex, pe);
             _names = null;
+            _modCount++;
             savePuppets();
         }
 
@@ -202,6 +217,7 @@ public class PuppetUtils {
         {
             PuppetEntry pe = getEntries().remove(anIndex);
             _names = null;
+            _modCount++;
             savePuppets();
             return pe.getPuppet();
         }
@@ -295,7 +311,7 @@ public class PuppetUtils {
         /**
          * The puppet.
          */
-        public Puppet getPuppet()
+        public synchronized Puppet getPuppet()
         {
             if (_puppet != null) return _puppet;
 
@@ -331,18 +347,25 @@ public class PuppetUtils {
      */
     public static class ActionFile {
 
-        // A List of actions
-        List<PuppetAction> _actions;
+        // A List of actions (volatile, so reads after load don't lock)
+        volatile List<PuppetAction> _actions;
 
         // The file path
         String _path = ROOT + "HumanActions.xml";
 
+        // The number of times action list has been modified (volatile, so readers compare without locking)
+        volatile int _modCount;
+
         /**
          * Returns the list of actions.
          */
         public List<PuppetAction> getActions()
         {
-            return _actions != null ? _actions : (_actions = loadActions());
+            List<PuppetAction> actions = _actions;
+            if (actions != null) return actions;
+            synchronized (this) {
+                return _actions != null ? _actions : (_actions = loadActions());
+            }
         }
 
         /**
@@ -361,6 +384,11 @@ public class PuppetUtils {
             return getActions().get(anIndex);
         }
 
+        /**
+         * Returns the number of times action list has been modified (so caches of lookups can be invalidated).
+         */
+        public int getModCount()  { return _modCount; }
+
         /**
          * Returns the action with given name.
          */
@@ -386,6 +414,7 @@ public class PuppetUtils {
         public void addAction(PuppetAction anAction, int anIndex)
         {
             getActions().add(anIndex, anAction);
+            _modCount++;
             saveActions();
         }
 
@@ -395,6 +424,7 @@ public class PuppetUtils {
         public PuppetAction removeAction(int anIndex)
         {
             PuppetAction action = getActions().remove(anIndex);
+            _modCount++;
             saveActions();
             return action;
         }
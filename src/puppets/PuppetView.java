@@ -83,10 +83,25 @@ public class PuppetView extends ParentView {
      */
     public void setPuppetHeight(double aHeight)
     {
-        _scale = .87 / 500 * aHeight;
+        _scale = getScaleForPuppetHeight(aHeight);
         rebuildChildren();
     }
 
+    /**
+     * Returns the view size for given puppet, puppet height and insets (without needing a view).
+     */
+    public static Size getPrefSizeForPuppet(Puppet aPuppet, double aHeight, Insets theIns)
+    {
+        double scale = getScaleForPuppetHeight(aHeight);
+        Rect bnds = aPuppet.getBounds();
+        return new Size(theIns.getWidth() + Math.round(bnds.width * scale), theIns.getHeight() + Math.round(bnds.height * scale));
+    }
+
+    /**
+     * Returns the puppet to view scale for given puppet height.
+     */
+    public static double getScaleForPuppetHeight(double aHeight)  { return .87 / 500 * aHeight; }
+
     /**
      * Returns a puppet point in local view coords.
      */
@@ -138,16 +153,23 @@ public class PuppetView extends ParentView {
      * Returns the transform from puppet to local.
      */
     public Transform getPuppetToLocal()
+    {
+        return getPuppetToLocal(getPuppet(), _scale, getInsetsAll());
+    }
+
+    /**
+     * Returns the transform from puppet to local for given puppet, scale and insets (without needing a view).
+     */
+    public static Transform getPuppetToLocal(Puppet aPuppet, double aScale, Insets theIns)
     {
         // Get puppet bounds and fromBounds of transform
-        Rect pbnds = getPuppet().getBounds();
+        Rect pbnds = aPuppet.getBounds();
         Rect fromBnds = new Rect(pbnds.x, pbnds.getMaxY(), pbnds.width, -pbnds.height);
 
         // Get bounds of puppet in view
-        Insets ins = getInsetsAll();
-        double pw = Math.round(pbnds.width * _scale);
-        double ph = Math.round(pbnds.height * _scale);
-        Rect toBnds = new Rect(ins.left, ins.top, pw, ph);
+        double pw = Math.round(pbnds.width * aScale);
+        double ph = Math.round(pbnds.height * aScale);
+        Rect toBnds = new Rect(theIns.left, theIns.top, pw, ph);
 
         // Create transform and return
         double sx = toBnds.width / fromBnds.width;
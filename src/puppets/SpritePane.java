@@ -1,5 +1,5 @@
 package puppets;
-import java.util.*;
+import snap.geom.Insets;
 import snap.view.*;
 import snap.gfx.*;
 
@@ -23,6 +23,9 @@ public class SpritePane extends ViewController {
     // Whether to loop anim
     private boolean _loopAnim;
 
+    // The current sprite image (rendered in background)
+    private Image _spriteImage;
+
     /**
      * Constructor.
      */
@@ -87,7 +90,23 @@ public class SpritePane extends ViewController {
     {
         Puppet puppet = _puppetsPane.getPuppet();
         PuppetAction action = _actionList.getSelItem();
-        Image img = getImage(puppet, action);
+        Image img = _spriteImage = getImage(puppet, action);
+
+        // If image still rendering, come back when loaded
+        if (!img.isLoaded())
+            img.addLoadListener(() -> runLater(() -> setSpriteImage(img)));
+        else setSpriteImage(img);
+    }
+
+    /**
+     * Sets the sprite image for given rendered image.
+     */
+    private void setSpriteImage(Image anImage)
+    {
+        // If selection changed since image requested, just return
+        if (anImage != _spriteImage) return;
+
+        Image img = anImage;
         if (_flipImage)
             img = PuppetUtils.getImagesFlipped(img);
 
@@ -134,28 +153,11 @@ public class SpritePane extends ViewController {
     }
 
     /**
-     * Returns an image for given action.
+     * Returns an image for given action (rendered in background at idle priority).
      */
     public Image getImage(Puppet aPuppet, PuppetAction anAction)
     {
-        ActionView actView = new ActionView(aPuppet);
-        actView.setPuppetHeight(200);
-        actView.setPuppet(aPuppet);
-        actView.setPosable(true);
-        actView.setAction(anAction);
-        actView.setFill(null);
-        actView.setBorder(null);
-
-        int frameCount = anAction.getMaxTime() / 25 + 1;
-        List<Image> images = new ArrayList<>();
-        for (int i = 0; i < frameCount; i++) {
-            actView.setActionTime(i * 25);
-            actView.finishPose();
-            Image img = ViewUtils.getImage(actView);
-            images.add(img);
-        }
-
-        ImageSet imgSet = new ImageSet(images);
-        return imgSet.getImage(0);
+        PuppetImager imager = new PuppetImager(aPuppet, anAction, .5, new Insets(50, 50, 50, 50), PuppetImager.PRIORITY_IDLE);
+        return imager.getImage();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,467 @@
+package puppets;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import snap.gfx.Image;
+import snap.util.SnapEnv;
+import snap.web.WebURL;
+
+/**
+ * A class to cache remote (http/https) resources on local disk, keyed by URL. A cached copy is revalidated once per
+ * run with a conditional request (ETag/Last-Modified), so repeat runs only fetch metadata unless a file changed.
+ * The cache is capped in size and evicts least recently used entries. Images for cached URLs are decoded from disk
+ * at once and revalidated on a background executor (owners are told if an image changed). Run main() with no args to
+ * check download, hit and revalidation against a local HTTP stand-in.
+ */
+public class WebCache {
+
+    // The cache directory
+    File  _dir;
+
+    // The max size of cache in bytes
+    long  _maxSize;
+
+    // The current size of cache in bytes
+    long  _size = -1;
+
+    // The URLs revalidated in this run
+    Set<String>  _validated = ConcurrentHashMap.newKeySet();
+
+    // The locks for URLs (so concurrent requests for same URL fetch once - kept for run, one small object per URL)
+    Map<String, Object>  _locks = new ConcurrentHashMap<>();
+
+    // The number of cache hits, revalidated hits and downloads
+    AtomicInteger  _hitCount = new AtomicInteger(), _revalidateCount = new AtomicInteger(), _downloadCount = new AtomicInteger();
+
+    // The executor to revalidate cached images in background
+    private static ExecutorService  _executor = Executors.newFixedThreadPool(4, r -> {
+        Thread thread = new Thread(r, "WebCache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The shared cache
+    private static WebCache  _shared;
+
+    // Constants
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+    private static final int TIMEOUT = 15000;
+
+    /**
+     * Constructor for given directory and max size.
+     */
+    public WebCache(File aDir, long aMaxSize)
+    {
+        _dir = aDir;
+        _maxSize = aMaxSize;
+    }
+
+    /**
+     * Returns the cache directory.
+     */
+    public File getDir()  { return _dir; }
+
+    /**
+     * Returns the max size of cache in bytes.
+     */
+    public long getMaxSize()  { return _maxSize; }
+
+    /**
+     * Returns the number of requests served from cache without network.
+     */
+    public int getHitCount()  { return _hitCount.get(); }
+
+    /**
+     * Returns the number of requests served from cache after revalidation.
+     */
+    public int getRevalidateCount()  { return _revalidateCount.get(); }
+
+    /**
+     * Returns the number of downloads.
+     */
+    public int getDownloadCount()  { return _downloadCount.get(); }
+
+    /**
+     * Returns the image for given source, using cache for remote URLs.
+     */
+    public Image getImage(Object aSource)  { return getImage(aSource, null); }
+
+    /**
+     * Returns the image for given source, using cache for remote URLs. If URL is cached but not yet validated this run,
+     * returns the cached image at once and revalidates in background, calling given runnable (if any) if it changed
+     * (so owner can release image and get the new one).
+     */
+    public Image getImage(Object aSource, Runnable aChangedRun)
+    {
+        // If not remote, just return image
+        String urls = getRemoteUrlString(aSource);
+        if (urls == null) return Image.getImageForSource(aSource);
+
+        // If cached and not validated this run, return cached image and revalidate in background
+        if (!_validated.contains(urls)) {
+            byte[] cached = getCachedBytes(urls);
+            if (cached != null) {
+                _executor.submit(() -> revalidate(urls, cached, aChangedRun));
+                return Image.getImageForSource(cached);
+            }
+        }
+
+        // Otherwise, get bytes now (hit or first download)
+        byte[] bytes = getBytes(urls);
+        return bytes != null ? Image.getImageForSource(bytes) : Image.getImageForSource(aSource);
+    }
+
+    /**
+     * Revalidates given URL (in background) and calls given runnable if bytes changed from given cached bytes.
+     */
+    private void revalidate(String aUrl, byte[] theCached, Runnable aChangedRun)
+    {
+        byte[] bytes = getBytes(aUrl);
+        if (bytes != null && !Arrays.equals(bytes, theCached) && aChangedRun != null)
+            aChangedRun.run();
+    }
+
+    /**
+     * Returns the cached bytes for given URL string without network (null if not cached).
+     */
+    private byte[] getCachedBytes(String aUrl)
+    {
+        String key = getKey(aUrl);
+        File dataFile = new File(_dir, key + ".bin");
+        if (!dataFile.exists() || readMeta(new File(_dir, key + ".meta")) == null) return null;
+        try {
+            byte[] bytes = readCached(dataFile);
+            _hitCount.incrementAndGet();
+            return bytes;
+        }
+        catch (IOException e) { return null; }
+    }
+
+    /**
+     * Returns the bytes for given remote URL string (from cache if valid), or null if not available.
+     */
+    public byte[] getBytes(String aUrl)
+    {
+        // Lock on URL, so concurrent requests for same URL fetch once
+        synchronized (getLock(aUrl)) {
+            try { return getBytesImpl(aUrl); }
+            catch (Exception e) {
+                System.err.println("WebCache.getBytes: Error for " + aUrl + ": " + e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the lock for given URL string.
+     */
+    private Object getLock(String aUrl)  { return _locks.computeIfAbsent(aUrl, k -> new Object()); }
+
+    /**
+     * Returns the bytes for given remote URL string.
+     */
+    protected byte[] getBytesImpl(String aUrl) throws IOException
+    {
+        // Get cached data file and metadata
+        String key = getKey(aUrl);
+        File dataFile = new File(_dir, key + ".bin");
+        File metaFile = new File(_dir, key + ".meta");
+        Properties meta = dataFile.exists() ? readMeta(metaFile) : null;
+
+        // If cached and already validated this run, return cached bytes
+        if (meta != null && _validated.contains(aUrl)) {
+            _hitCount.incrementAndGet();
+            return readCached(dataFile);
+        }
+
+        // Send request (conditional if cached)
+        HttpURLConnection conn = openConnection(aUrl);
+        if (meta != null) {
+            String etag = meta.getProperty("ETag");
+            long lastMod = Long.parseLong(meta.getProperty("LastModified", "0"));
+            if (etag != null) conn.setRequestProperty("If-None-Match", etag);
+            if (lastMod > 0) conn.setIfModifiedSince(lastMod);
+        }
+
+        // Get response (if network fails and cached, use cached)
+        int code;
+        try { code = conn.getResponseCode(); }
+        catch (IOException e) {
+            if (meta == null) throw e;
+            System.err.println("WebCache.getBytes: Using cached copy (" + e + ") for " + aUrl);
+            _validated.add(aUrl);
+            return readCached(dataFile);
+        }
+
+        // If not modified, return cached
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+            conn.disconnect();
+            _validated.add(aUrl);
+            _revalidateCount.incrementAndGet();
+            return readCached(dataFile);
+        }
+
+        // If not found or other failure, return null
+        if (code != HttpURLConnection.HTTP_OK) {
+            conn.disconnect();
+            return null;
+        }
+
+        // Read bytes and save to cache
+        byte[] bytes;
+        try (InputStream in = conn.getInputStream()) { bytes = in.readAllBytes(); }
+        Properties newMeta = new Properties();
+        newMeta.setProperty("URL", aUrl);
+        String etag = conn.getHeaderField("ETag");
+        if (etag != null) newMeta.setProperty("ETag", etag);
+        newMeta.setProperty("LastModified", String.valueOf(conn.getLastModified()));
+        putCached(dataFile, metaFile, bytes, newMeta);
+        _validated.add(aUrl);
+        _downloadCount.incrementAndGet();
+        return bytes;
+    }
+
+    /**
+     * Opens connection for given URL string.
+     */
+    protected HttpURLConnection openConnection(String aUrl) throws IOException
+    {
+        HttpURLConnection conn = (HttpURLConnection) new URL(aUrl).openConnection();
+        conn.setConnectTimeout(TIMEOUT);
+        conn.setReadTimeout(TIMEOUT);
+        return conn;
+    }
+
+    /**
+     * Reads cached bytes and marks file as recently used.
+     */
+    private byte[] readCached(File aFile) throws IOException
+    {
+        aFile.setLastModified(System.currentTimeMillis());
+        return Files.readAllBytes(aFile.toPath());
+    }
+
+    /**
+     * Writes cached bytes and metadata (atomically) and evicts old entries if over max size.
+     */
+    private void putCached(File aDataFile, File aMetaFile, byte[] theBytes, Properties aMeta) throws IOException
+    {
+        _dir.mkdirs();
+        getSize(); // Make sure size is calculated before write
+        long oldSize = aDataFile.exists() ? aDataFile.length() : 0;
+
+        // Write data to temp file and move into place
+        Path temp = Files.createTempFile(_dir.toPath(), "tmp", ".part");
+        Files.write(temp, theBytes);
+        Files.move(temp, aDataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeMeta(aMetaFile, aMeta);
+
+        // Update size and evict
+        synchronized (this) {
+            _size = _size - oldSize + theBytes.length;
+            if (_size > _maxSize)
+                evict(aDataFile);
+        }
+    }
+
+    /**
+     * Returns the current size of cache in bytes.
+     */
+    public synchronized long getSize()
+    {
+        if (_size >= 0) return _size;
+        long size = 0;
+        File[] files = _dir.listFiles((dir, name) -> name.endsWith(".bin"));
+        if (files != null) for (File file : files) size += file.length();
+        return _size = size;
+    }
+
+    /**
+     * Deletes least recently used entries until cache is under max size (keeping given file).
+     */
+    private void evict(File aKeepFile)
+    {
+        File[] files = _dir.listFiles((dir, name) -> name.endsWith(".bin"));
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (_size <= _maxSize) break;
+            if (file.equals(aKeepFile)) continue;
+            long length = file.length();
+            String name = file.getName();
+            if (file.delete()) {
+                new File(_dir, name.substring(0, name.length() - 4) + ".meta").delete();
+                _size -= length;
+            }
+        }
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public synchronized void clear()
+    {
+        File[] files = _dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        _size = 0;
+        _validated.clear();
+    }
+
+    /**
+     * Reads metadata file.
+     */
+    private static Properties readMeta(File aFile)
+    {
+        if (!aFile.exists()) return null;
+        Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(aFile)) { meta.load(in); }
+        catch (IOException e) { return null; }
+        return meta;
+    }
+
+    /**
+     * Writes metadata file (atomically).
+     */
+    private void writeMeta(File aFile, Properties aMeta) throws IOException
+    {
+        Path temp = Files.createTempFile(_dir.toPath(), "tmp", ".part");
+        try (OutputStream out = Files.newOutputStream(temp)) { aMeta.store(out, null); }
+        Files.move(temp, aFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the cache key (hex SHA-1) for URL string.
+     */
+    private static String getKey(String aUrl)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(aUrl.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+        catch (Exception e) { throw new RuntimeException(e); }
+    }
+
+    /**
+     * Returns the remote URL string for given source (WebURL or String), or null if not http/https.
+     */
+    private static String getRemoteUrlString(Object aSource)
+    {
+        String urls = aSource instanceof WebURL url ? url.getString() : aSource instanceof String str ? str : null;
+        return urls != null && (urls.startsWith("http://") || urls.startsWith("https://")) ? urls : null;
+    }
+
+    /**
+     * Returns the image for given source, using shared cache for remote URLs (if enabled).
+     */
+    public static Image getImageForSource(Object aSource)  { return getImageForSource(aSource, null); }
+
+    /**
+     * Returns the image for given source, using shared cache for remote URLs (if enabled), calling given runnable if a
+     * cached image is found to have changed on revalidation.
+     */
+    public static Image getImageForSource(Object aSource, Runnable aChangedRun)
+    {
+        // If browser, just return image (keeps java.net/java.nio.file/MessageDigest out of TeaVM)
+        if (SnapEnv.isTeaVM) return Image.getImageForSource(aSource);
+        WebCache cache = getShared();
+        return cache != null ? cache.getImage(aSource, aChangedRun) : Image.getImageForSource(aSource);
+    }
+
+    /**
+     * Returns the shared cache (null if disabled or in browser, which has its own cache).
+     */
+    public static synchronized WebCache getShared()
+    {
+        if (_shared != null || SnapEnv.isTeaVM || Boolean.getBoolean("comics.cache.disabled")) return _shared;
+        String dirPath = System.getProperty("comics.cache.dir", System.getProperty("user.home") + "/.comicscript/cache");
+        long maxSize = Long.getLong("comics.cache.maxSize", DEFAULT_MAX_SIZE);
+        return _shared = new WebCache(new File(dirPath), maxSize);
+    }
+
+    /**
+     * Sets the shared cache (null resets to default).
+     */
+    public static synchronized void setShared(WebCache aCache)
+    {
+        _shared = aCache;
+    }
+
+    /**
+     * Checks download, hit, revalidation, change (inline and in background) and offline use against a local HTTP stand-in (exits 1 on failure).
+     */
+    public static void main(String[] args) throws Exception
+    {
+        // Start local server with one resource that answers conditional requests with ETag
+        String[] body = { "v1" };
+        int[] requestCount = { 0 };
+        com.sun.net.httpserver.HttpServer server = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/res", exchange -> {
+            requestCount[0]++;
+            String etag = '"' + body[0] + '"';
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            else {
+                byte[] bytes = body[0].getBytes("UTF-8");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/res";
+        File dir = Files.createTempDirectory("WebCache").toFile();
+        boolean ok = true;
+
+        // First run: download, then hit without network
+        WebCache cache = new WebCache(dir, DEFAULT_MAX_SIZE);
+        ok &= check("download", "v1", cache.getBytes(url), cache.getDownloadCount() == 1);
+        ok &= check("hit", "v1", cache.getBytes(url), cache.getHitCount() == 1 && requestCount[0] == 1);
+
+        // Second run: revalidate (304)
+        cache = new WebCache(dir, DEFAULT_MAX_SIZE);
+        ok &= check("revalidate", "v1", cache.getBytes(url), cache.getRevalidateCount() == 1 && cache.getDownloadCount() == 0);
+
+        // Third run after change: download new bytes
+        body[0] = "v2";
+        cache = new WebCache(dir, DEFAULT_MAX_SIZE);
+        ok &= check("changed", "v2", cache.getBytes(url), cache.getDownloadCount() == 1);
+
+        // Fourth run after change, getting image: cached image returned at once, then owner told it changed
+        body[0] = "v3";
+        cache = new WebCache(dir, DEFAULT_MAX_SIZE);
+        CountDownLatch changed = new CountDownLatch(1);
+        cache.getImage(url, changed::countDown);
+        boolean changedCalled = changed.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        ok &= check("changed in background", "v3", cache.getBytes(url), changedCalled && cache.getDownloadCount() == 1);
+
+        // Fifth run with server down: use cached copy
+        server.stop(0);
+        cache = new WebCache(dir, DEFAULT_MAX_SIZE);
+        ok &= check("offline", "v3", cache.getBytes(url), cache.getDownloadCount() == 0);
+
+        // Clean up and report
+        cache.clear();
+        dir.delete();
+        System.out.println(ok ? "WebCache: All checks passed" : "WebCache: Checks failed");
+        if (!ok) System.exit(1);
+    }
+
+    /**
+     * Prints and returns whether given bytes match expected string and given condition is true.
+     */
+    private static boolean check(String aName, String anExpected, byte[] theBytes, boolean aCondition) throws IOException
+    {
+        String str = theBytes != null ? new String(theBytes, "UTF-8") : null;
+        boolean ok = anExpected.equals(str) && aCondition;
+        System.out.println("WebCache check " + aName + ": " + (ok ? "ok" : "FAILED (got " + str + ")"));
+        return ok;
+    }
+}